@@ -404,7 +404,7 @@ public abstract class AbstractEventSignal extends AbstractSignal {
 
 					if (!pl.isLearned()) {
 						try {
-							pl.setJavaScript(learner.learn(pl));
+							pl.setJavaScript(learner.learn(this, pl));
 						} catch (IOException e) {
 							// This is kind of impossible since we are writing
 							// to a god damn string
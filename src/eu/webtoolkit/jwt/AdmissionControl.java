@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.webtoolkit.jwt.utils.StreamUtils;
+
+/*
+ * Limits the load that a servlet accepts: the number of requests that are being
+ * processed concurrently, and the number and creation rate of sessions.
+ *
+ * A request that is not admitted is answered with a 503 (Service Unavailable) response
+ * (and the configured overload page), before a WebRequest or WebSession is created
+ * for it.
+ */
+class AdmissionControl {
+	private static Logger logger = LoggerFactory.getLogger(AdmissionControl.class);
+
+	private Configuration configuration;
+	private AtomicInteger inFlight = new AtomicInteger();
+	private AtomicLong admittedRequests = new AtomicLong();
+	private AtomicLong rejectedRequests = new AtomicLong();
+	private AtomicLong admittedSessions = new AtomicLong();
+	private AtomicLong rejectedSessions = new AtomicLong();
+
+	/* Token bucket for the session creation rate */
+	private double tokens;
+	private long lastRefill;
+
+	private byte[] overloadPage;
+	private String overloadPageFile;
+
+	AdmissionControl(Configuration configuration) {
+		this.configuration = configuration;
+		this.tokens = -1;
+		this.lastRefill = System.nanoTime();
+	}
+
+	/*
+	 * Admits a request for processing. An admitted request must be followed by a call
+	 * to exitRequest().
+	 */
+	boolean enterRequest() {
+		int max = configuration.getMaxConcurrentRequests();
+		int current = inFlight.incrementAndGet();
+		if (max > 0 && current > max) {
+			inFlight.decrementAndGet();
+			rejectedRequests.incrementAndGet();
+			return false;
+		}
+
+		admittedRequests.incrementAndGet();
+		return true;
+	}
+
+	void exitRequest() {
+		inFlight.decrementAndGet();
+	}
+
+	/*
+	 * Admits the creation of a new session, given the current number of sessions.
+	 */
+	boolean admitSession(int sessions) {
+		int maxSessions = configuration.getMaxSessions();
+		if (maxSessions > 0 && sessions >= maxSessions) {
+			rejectedSessions.incrementAndGet();
+			return false;
+		}
+
+		double rate = configuration.getMaxSessionRate();
+		if (rate > 0) {
+			synchronized (this) {
+				long now = System.nanoTime();
+				if (tokens < 0)
+					tokens = rate;
+				else
+					tokens = Math.min(rate, tokens + (now - lastRefill) * rate / 1E9);
+				lastRefill = now;
+
+				if (tokens < 1) {
+					rejectedSessions.incrementAndGet();
+					return false;
+				}
+
+				tokens -= 1;
+			}
+		}
+
+		admittedSessions.incrementAndGet();
+		return true;
+	}
+
+	/*
+	 * Sends the response for a request that was not admitted.
+	 */
+	void reject(HttpServletResponse response) throws IOException {
+		response.setStatus(503);
+		response.setHeader("Retry-After", String.valueOf(configuration.getOverloadRetryAfter()));
+		response.setHeader("Cache-Control", "no-cache, no-store");
+
+		byte[] page = getOverloadPage();
+		if (page != null) {
+			response.setContentType("text/html; charset=utf-8");
+			response.setContentLength(page.length);
+			response.getOutputStream().write(page);
+		} else
+			response.setContentLength(0);
+	}
+
+	private synchronized byte[] getOverloadPage() {
+		String fileName = configuration.getOverloadPage();
+		if (fileName == null) {
+			overloadPage = null;
+			overloadPageFile = null;
+		} else if (!fileName.equals(overloadPageFile)) {
+			overloadPageFile = fileName;
+			overloadPage = null;
+
+			InputStream in = null;
+			try {
+				in = new FileInputStream(fileName);
+				ByteArrayOutputStream data = new ByteArrayOutputStream();
+				StreamUtils.copy(in, data);
+				overloadPage = data.toByteArray();
+			} catch (IOException e) {
+				logger.error("Could not read overload page: " + fileName, e);
+			} finally {
+				StreamUtils.closeQuietly(in);
+			}
+		}
+
+		return overloadPage;
+	}
+
+	int getRequestsInFlight() {
+		return inFlight.get();
+	}
+
+	long getAdmittedRequests() {
+		return admittedRequests.get();
+	}
+
+	long getRejectedRequests() {
+		return rejectedRequests.get();
+	}
+
+	long getAdmittedSessions() {
+		return admittedSessions.get();
+	}
+
+	long getRejectedSessions() {
+		return rejectedSessions.get();
+	}
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.webtoolkit.jwt.servlet.WebRequest;
+import eu.webtoolkit.jwt.utils.HttpUtils;
+
+/**
+ * A cache for the pages that are rendered for bots.
+ * <p>
+ * A bot (see {@link Configuration#agentIsBot(String)}) gets a plain HTML rendering of
+ * the application, for which JWt creates a session that is terminated right after the
+ * page has been served. When enabled (see {@link Configuration#setBotPageCacheSize(int)}),
+ * these pages are kept in memory, keyed by the internal path, the locale and the values
+ * of a configurable set of request parameters, so that subsequent requests by bots for
+ * the same page are served without creating a session.
+ * <p>
+ * Pages expire after a time-to-live, and are evicted in least-recently-used order.
+ * When the content of the application changes, the affected pages should be
+ * invalidated using {@link #invalidate(String)} or {@link #invalidate()}. The cache of
+ * an application is available from {@link WtServlet#getBotPageCache()}.
+ */
+public class BotPageCache {
+	private static Logger logger = LoggerFactory.getLogger(BotPageCache.class);
+
+	/*
+	 * A response header, with either a string or a date value.
+	 */
+	static class Header {
+		private String name;
+		private String value;
+		private long date;
+
+		Header(String name, String value, long date) {
+			this.name = name;
+			this.value = value;
+			this.date = date;
+		}
+
+		void addTo(HttpServletResponse response) {
+			if (value != null)
+				response.addHeader(name, value);
+			else
+				response.addDateHeader(name, date);
+		}
+	}
+
+	static class Entry {
+		private String internalPath;
+		private String contentType;
+		private List<Header> headers;
+		private byte[] data;
+		private long expires;
+
+		Entry(String internalPath, String contentType, List<Header> headers, byte[] data, long expires) {
+			this.internalPath = internalPath;
+			this.contentType = contentType;
+			this.headers = headers;
+			this.data = data;
+			this.expires = expires;
+		}
+	}
+
+	/*
+	 * A response which records the page that is rendered for a bot, while it is sent.
+	 */
+	class Recorder extends HttpServletResponseWrapper {
+		private String key;
+		private String internalPath;
+		private int status = HttpServletResponse.SC_OK;
+		private List<Header> headers = new ArrayList<Header>();
+		private ByteArrayOutputStream data = new ByteArrayOutputStream();
+		private ServletOutputStream outputStream;
+
+		Recorder(HttpServletResponse response, String key, String internalPath) {
+			super(response);
+			this.key = key;
+			this.internalPath = internalPath;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (outputStream == null) {
+				final ServletOutputStream out = super.getOutputStream();
+				outputStream = new ServletOutputStream() {
+					@Override
+					public void write(int b) throws IOException {
+						out.write(b);
+						data.write(b);
+					}
+
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException {
+						out.write(b, off, len);
+						data.write(b, off, len);
+					}
+
+					@Override
+					public void flush() throws IOException {
+						out.flush();
+					}
+				};
+			}
+
+			return outputStream;
+		}
+
+		@Override
+		public void setStatus(int sc) {
+			status = sc;
+			super.setStatus(sc);
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException {
+			status = sc;
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			status = sc;
+			super.sendError(sc, msg);
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			status = HttpServletResponse.SC_FOUND;
+			super.sendRedirect(location);
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+			recordHeader(name, value, 0, true);
+			super.setHeader(name, value);
+		}
+
+		@Override
+		public void addHeader(String name, String value) {
+			recordHeader(name, value, 0, false);
+			super.addHeader(name, value);
+		}
+
+		@Override
+		public void setDateHeader(String name, long date) {
+			recordHeader(name, null, date, true);
+			super.setDateHeader(name, date);
+		}
+
+		@Override
+		public void addDateHeader(String name, long date) {
+			recordHeader(name, null, date, false);
+			super.addDateHeader(name, date);
+		}
+
+		@Override
+		public void setIntHeader(String name, int value) {
+			recordHeader(name, String.valueOf(value), 0, true);
+			super.setIntHeader(name, value);
+		}
+
+		@Override
+		public void addIntHeader(String name, int value) {
+			recordHeader(name, String.valueOf(value), 0, false);
+			super.addIntHeader(name, value);
+		}
+
+		/*
+		 * Records a header to be replayed with the cached page. Cookies belong to the
+		 * session that rendered the page, and are never replayed.
+		 */
+		private void recordHeader(String name, String value, long date, boolean replace) {
+			if (name.equalsIgnoreCase("Set-Cookie") || name.equalsIgnoreCase("Content-Type")
+					|| name.equalsIgnoreCase("Content-Length"))
+				return;
+
+			if (replace)
+				for (Iterator<Header> i = headers.iterator(); i.hasNext();)
+					if (i.next().name.equalsIgnoreCase(name))
+						i.remove();
+
+			headers.add(new Header(name, value, date));
+		}
+
+		/*
+		 * Adds the recorded page to the cache, if it was rendered successfully.
+		 */
+		void store() {
+			if (status == HttpServletResponse.SC_OK && data.size() > 0)
+				put(key, new Entry(internalPath, getContentType(), headers, data.toByteArray(),
+						System.currentTimeMillis() + ttl * 1000L));
+		}
+	}
+
+	private int maxSize;
+	private int ttl;
+	private List<String> parameters;
+	private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+
+	BotPageCache(Configuration configuration) {
+		this.maxSize = configuration.getBotPageCacheSize();
+		this.ttl = configuration.getBotPageCacheTtl();
+		this.parameters = configuration.getBotPageCacheParameters();
+	}
+
+	boolean isEnabled() {
+		return maxSize > 0;
+	}
+
+	/*
+	 * Returns the key of the page requested by a bot, or null if the request is not
+	 * for a cacheable page (e.g. an event or a resource).
+	 */
+	String getKey(HttpServletRequest request, Configuration configuration) {
+		if (!"GET".equals(request.getMethod()) || request.getParameter("request") != null
+				|| request.getParameter("wtd") != null)
+			return null;
+
+		String userAgent = request.getHeader("User-Agent");
+		if (userAgent == null || !configuration.agentIsBot(userAgent))
+			return null;
+
+		StringBuilder key = new StringBuilder();
+		key.append(WebRequest.computeScriptName(request)).append('\n');
+		key.append(getInternalPath(request)).append('\n');
+		key.append(request.getLocale()).append('\n');
+		key.append(HttpUtils.acceptsGzip(request));
+		for (String parameter : parameters) {
+			String[] values = request.getParameterValues(parameter);
+			key.append('\n').append(parameter);
+			if (values != null)
+				for (String value : values)
+					key.append('=').append(value);
+		}
+
+		return key.toString();
+	}
+
+	static String getInternalPath(HttpServletRequest request) {
+		String internalPath = request.getParameter("_");
+		if (internalPath == null)
+			internalPath = WebRequest.computePathInfo(request);
+		if (internalPath == null || internalPath.length() == 0)
+			return "/";
+		return StringUtils.prepend(internalPath, '/');
+	}
+
+	/*
+	 * Serves a cached page, and returns whether it was found.
+	 */
+	boolean serve(String key, HttpServletResponse response) throws IOException {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry != null && entry.expires < System.currentTimeMillis()) {
+				entries.remove(key);
+				entry = null;
+			}
+		}
+
+		if (entry == null) {
+			misses.incrementAndGet();
+			return false;
+		}
+
+		hits.incrementAndGet();
+		logger.debug("serving cached page for bot: " + entry.internalPath);
+
+		response.setContentType(entry.contentType);
+		for (Header header : entry.headers)
+			header.addTo(response);
+		if (!response.containsHeader("Vary"))
+			response.setHeader("Vary", "Accept-Encoding");
+		response.setContentLength(entry.data.length);
+		response.getOutputStream().write(entry.data);
+		response.getOutputStream().flush();
+
+		return true;
+	}
+
+	Recorder record(HttpServletResponse response, String key, HttpServletRequest request) {
+		return new Recorder(response, key, getInternalPath(request));
+	}
+
+	private synchronized void put(String key, Entry entry) {
+		entries.put(key, entry);
+
+		for (Iterator<Entry> i = entries.values().iterator(); entries.size() > maxSize && i.hasNext();) {
+			i.next();
+			i.remove();
+		}
+	}
+
+	/**
+	 * Removes the pages of an internal path, and of the internal paths below it.
+	 * <p>
+	 * For example, invalidating "/catalogue" removes the pages for "/catalogue" and
+	 * "/catalogue/item-1", but not for "/catalogue-old".
+	 */
+	public void invalidate(String internalPath) {
+		String path = StringUtils.prepend(internalPath, '/');
+		String prefix = path.endsWith("/") ? path : path + "/";
+
+		synchronized (this) {
+			for (Iterator<Entry> i = entries.values().iterator(); i.hasNext();) {
+				Entry entry = i.next();
+				if (entry.internalPath.equals(path) || entry.internalPath.startsWith(prefix))
+					i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes all pages.
+	 */
+	public synchronized void invalidate() {
+		entries.clear();
+	}
+
+	/**
+	 * Returns the number of cached pages.
+	 */
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of requests by bots that were served from the cache.
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of requests by bots for which a page was rendered.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The progress of a function that is broadcast to sessions.
+ * <p>
+ * A broadcast posts the same function to many sessions (see
+ * {@link WtServlet#broadcast(Runnable, Broadcast.Filter)}). Each session runs the function
+ * independently, in its own turn, so that a session which is busy handling a long
+ * event does not delay the other sessions. This object keeps track of the outcome for
+ * each session, and allows to wait until every session has run the function.
+ */
+public class Broadcast {
+	private static Logger logger = LoggerFactory.getLogger(Broadcast.class);
+
+	/**
+	 * A filter that selects the sessions of a broadcast.
+	 */
+	public interface Filter {
+		/**
+		 * Returns whether the function should be run for an application.
+		 * <p>
+		 * This is called while holding the session's lock, right before the function
+		 * would be run, and should thus return quickly.
+		 */
+		public boolean accept(WApplication app);
+	}
+
+	private Runnable function;
+	private Filter filter;
+	private int sessionCount;
+	private CountDownLatch pending;
+	private AtomicInteger completed = new AtomicInteger();
+	private AtomicInteger failed = new AtomicInteger();
+	private AtomicInteger skipped = new AtomicInteger();
+	private AtomicInteger gone = new AtomicInteger();
+
+	Broadcast(Runnable function, Filter filter, int sessionCount) {
+		this.function = function;
+		this.filter = filter;
+		this.sessionCount = sessionCount;
+		this.pending = new CountDownLatch(sessionCount);
+	}
+
+	/*
+	 * Returns the function to post to a single session.
+	 */
+	Runnable getSessionFunction() {
+		return new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (filter != null && !filter.accept(WApplication.getInstance())) {
+						skipped.incrementAndGet();
+						return;
+					}
+
+					function.run();
+					completed.incrementAndGet();
+				} catch (RuntimeException e) {
+					failed.incrementAndGet();
+					logger.error("Exception in broadcast function", e);
+				} finally {
+					pending.countDown();
+				}
+			}
+		};
+	}
+
+	/*
+	 * Returns the function to run when a session is gone.
+	 */
+	Runnable getFallBackFunction() {
+		return new Runnable() {
+			@Override
+			public void run() {
+				gone.incrementAndGet();
+				pending.countDown();
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of sessions to which the function was posted.
+	 */
+	public int getSessionCount() {
+		return sessionCount;
+	}
+
+	/**
+	 * Returns the number of sessions that have run the function successfully.
+	 */
+	public int getCompletedCount() {
+		return completed.get();
+	}
+
+	/**
+	 * Returns the number of sessions in which the function threw an exception.
+	 */
+	public int getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * Returns the number of sessions that were not selected by the filter.
+	 */
+	public int getSkippedCount() {
+		return skipped.get();
+	}
+
+	/**
+	 * Returns the number of sessions that terminated before they could run the function.
+	 */
+	public int getGoneCount() {
+		return gone.get();
+	}
+
+	/**
+	 * Returns the number of sessions that have yet to run the function.
+	 */
+	public int getPendingCount() {
+		return (int) pending.getCount();
+	}
+
+	/**
+	 * Returns whether every session has run the function (or was skipped or gone).
+	 */
+	public boolean isDone() {
+		return pending.getCount() == 0;
+	}
+
+	/**
+	 * Waits until every session has run the function, or until a timeout.
+	 *
+	 * @return whether the broadcast is done.
+	 */
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		return pending.await(timeout, unit);
+	}
+
+	@Override
+	public String toString() {
+		return "Broadcast(sessions=" + sessionCount + ", completed=" + getCompletedCount() + ", failed="
+				+ getFailedCount() + ", skipped=" + getSkippedCount() + ", gone=" + getGoneCount() + ", pending="
+				+ getPendingCount() + ")";
+	}
+}
@@ -9,6 +9,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -74,6 +75,30 @@ public class Configuration {
 	private int doubleClickTimeout = 200;
 	private int bootstrapTimeout = 10;
 	private String uaCompatible = "";
+	private boolean splitScript = false;
+	private long staticResourceCacheSize = 16 * 1024 * 1024;
+	private boolean compressResponses = true;
+	private int compressionThreshold = 1024;
+	private boolean streamMainPage = false;
+	private boolean bundlePreambles = false;
+	private boolean shareLearnedSlots = false;
+	private int botPageCacheSize = 0;
+	private int botPageCacheTtl = 3600;
+	private List<String> botPageCacheParameters = new ArrayList<String>();
+	private boolean webSockets = false;
+	private long uploadFileSizeMax = -1;
+	private long uploadFieldSizeMax = -1;
+	private int requestThreads = 0;
+	private int requestQueueSize = 1000;
+	private boolean virtualThreads = false;
+	private Executor requestExecutor = null;
+	private int postThreads = 0;
+	private int maxSessions = 0;
+	private double maxSessionRate = 0;
+	private int maxConcurrentRequests = 0;
+	private String overloadPage = null;
+	private int overloadRetryAfter = 5;
+	private RequestTracer requestTracer = null;
 
 	/**
 	 * Creates a default configuration.
@@ -150,6 +175,54 @@ public class Configuration {
 						setRedirectMessage(node.getTextContent().trim());
 					} else if (node.getNodeName().equalsIgnoreCase("inline-css")) {
 						setInlineCss(parseBoolean(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("split-script")) {
+						setSplitScript(parseBoolean(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("static-resource-cache-size")) {
+						setStaticResourceCacheSize(parseLong(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("bot-page-cache-size")) {
+						setBotPageCacheSize((int) parseLong(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("bot-page-cache-ttl")) {
+						setBotPageCacheTtl((int) parseLong(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("bot-page-cache-parameters")) {
+						List<String> parameters = new ArrayList<String>();
+						for (String parameter : node.getTextContent().split("[,\\s]+"))
+							if (parameter.length() > 0)
+								parameters.add(parameter);
+						setBotPageCacheParameters(parameters);
+					} else if (node.getNodeName().equalsIgnoreCase("compress-responses")) {
+						setCompressResponses(parseBoolean(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("compression-threshold")) {
+						setCompressionThreshold((int) parseLong(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("stream-main-page")) {
+						setStreamMainPage(parseBoolean(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("bundle-preambles")) {
+						setBundlePreambles(parseBoolean(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("share-learned-slots")) {
+						setShareLearnedSlots(parseBoolean(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("web-sockets")) {
+						setWebSockets(parseBoolean(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("upload-file-size-max")) {
+						setUploadFileSizeMax(parseLong(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("upload-field-size-max")) {
+						setUploadFieldSizeMax(parseLong(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("request-threads")) {
+						setRequestThreads((int) parseLong(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("request-queue-size")) {
+						setRequestQueueSize((int) parseLong(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("virtual-threads")) {
+						setVirtualThreads(parseBoolean(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("post-threads")) {
+						setPostThreads((int) parseLong(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("max-sessions")) {
+						setMaxSessions((int) parseLong(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("max-session-rate")) {
+						setMaxSessionRate(parseDouble(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("max-concurrent-requests")) {
+						setMaxConcurrentRequests((int) parseLong(errorMessage, node));
+					} else if (node.getNodeName().equalsIgnoreCase("overload-page")) {
+						setOverloadPage(node.getTextContent().trim());
+					} else if (node.getNodeName().equalsIgnoreCase("overload-retry-after")) {
+						setOverloadRetryAfter((int) parseLong(errorMessage, node));
 					} else if (node.getNodeName().equalsIgnoreCase("favicon")) {
 						setFavicon(node.getTextContent().trim());
 					} else if (node.getNodeName().equalsIgnoreCase("lis")) {
@@ -194,6 +267,22 @@ public class Configuration {
 		}
 	}
 
+	private long parseLong(String errorMessage, Node n) {
+		try {
+			return Long.parseLong(n.getTextContent().trim());
+		} catch (NumberFormatException e) {
+			throw new RuntimeException(errorMessage + "Cannot parse integer value from element " + n.getNodeName());
+		}
+	}
+
+	private double parseDouble(String errorMessage, Node n) {
+		try {
+			return Double.parseDouble(n.getTextContent().trim());
+		} catch (NumberFormatException e) {
+			throw new RuntimeException(errorMessage + "Cannot parse numeric value from element " + n.getNodeName());
+		}
+	}
+
 	/**
 	 * Sets properties.
 	 * <br/>
@@ -666,17 +755,610 @@ public class Configuration {
 		this.properties_.put("tinyMCEVersion", "" + version);
 	}
 
-	/*
-	 * The following are not yet enabled for JWt
+	/**
+	 * Sets whether the bootstrap script is split in a skeleton and a session part.
+	 * <p>
+	 * When enabled, the main script is loaded in two requests: the first one serves
+	 * the JWt JavaScript library (and jQuery), which does not depend on the session
+	 * and is thus cached server-side (pre-compressed, and shared by all sessions) and
+	 * client-side. The second one serves the small session specific part.
+	 * <p>
+	 * The default value is <code>false</code>.
 	 */
-	boolean webSockets() {
-		return false;
+	public void setSplitScript(boolean splitScript) {
+		this.splitScript = splitScript;
 	}
 
-	boolean splitScript() {
-		return false;
+	/**
+	 * Returns whether the bootstrap script is split.
+	 * 
+	 * @see #setSplitScript(boolean)
+	 */
+	public boolean splitScript() {
+		return splitScript;
+	}
+
+	/**
+	 * Sets the size of the static resource cache.
+	 * <p>
+	 * Static files that JWt serves from its jar (the files in the resources folder, see
+	 * {@link WApplication#getResourcesUrl()}) are kept in memory, together with a compressed
+	 * variant for text files. This configures an upper bound for the memory used by
+	 * this cache.
+	 * <p>
+	 * The default value is 16 MB. This must be set before the servlet is initialized.
+	 * 
+	 * @param bytes the maximum size, in bytes.
+	 */
+	public void setStaticResourceCacheSize(long bytes) {
+		this.staticResourceCacheSize = bytes;
+	}
+
+	/**
+	 * Returns the size of the static resource cache.
+	 * 
+	 * @see #setStaticResourceCacheSize(long)
+	 */
+	public long getStaticResourceCacheSize() {
+		return staticResourceCacheSize;
+	}
+
+	/**
+	 * Sets the size of the cache for pages that are rendered for bots.
+	 * <p>
+	 * When enabled, the plain HTML pages that are rendered for bots (see
+	 * {@link #agentIsBot(String)}) are kept in memory, and served to subsequent requests
+	 * by bots for the same page without creating a session. A page is identified by its
+	 * internal path, the locale and the parameters configured with
+	 * {@link #setBotPageCacheParameters(List)}. Only enable this for applications which
+	 * render the same page for every bot, and invalidate the cached pages when their
+	 * content changes (see {@link BotPageCache}).
+	 * <p>
+	 * The default value is 0 (disabled). This must be set before the servlet is initialized.
+	 * 
+	 * @param pages the maximum number of pages.
+	 */
+	public void setBotPageCacheSize(int pages) {
+		this.botPageCacheSize = pages;
+	}
+
+	/**
+	 * Returns the size of the cache for pages that are rendered for bots.
+	 * 
+	 * @see #setBotPageCacheSize(int)
+	 */
+	public int getBotPageCacheSize() {
+		return botPageCacheSize;
+	}
+
+	/**
+	 * Sets the time-to-live of the pages that are cached for bots.
+	 * <p>
+	 * The default value is 3600 seconds.
+	 * 
+	 * @param seconds the time-to-live, in seconds.
+	 * @see #setBotPageCacheSize(int)
+	 */
+	public void setBotPageCacheTtl(int seconds) {
+		this.botPageCacheTtl = seconds;
+	}
+
+	/**
+	 * Returns the time-to-live of the pages that are cached for bots.
+	 * 
+	 * @see #setBotPageCacheTtl(int)
+	 */
+	public int getBotPageCacheTtl() {
+		return botPageCacheTtl;
+	}
+
+	/**
+	 * Sets the request parameters which identify a page that is cached for bots.
+	 * <p>
+	 * Besides the internal path and the locale, pages that are cached for bots are
+	 * distinguished by the values of these parameters. Other parameters are ignored.
+	 * <p>
+	 * The default value is an empty list.
+	 * 
+	 * @see #setBotPageCacheSize(int)
+	 */
+	public void setBotPageCacheParameters(List<String> parameters) {
+		this.botPageCacheParameters = parameters;
+	}
+
+	/**
+	 * Returns the request parameters which identify a page that is cached for bots.
+	 * 
+	 * @see #setBotPageCacheParameters(List)
+	 */
+	public List<String> getBotPageCacheParameters() {
+		return botPageCacheParameters;
+	}
+
+	/**
+	 * Sets whether responses rendered by JWt are compressed.
+	 * <p>
+	 * When enabled, the main page, the main script and the JavaScript updates are served with
+	 * a gzip content-encoding to browsers which accept it. Static resources and WebSocket messages
+	 * are not affected.
+	 * <p>
+	 * You may want to disable this when a reverse proxy already compresses responses.
+	 * <p>
+	 * The default value is <code>true</code>.
+	 * 
+	 * @see #setCompressionThreshold(int)
+	 */
+	public void setCompressResponses(boolean compressResponses) {
+		this.compressResponses = compressResponses;
+	}
+
+	/**
+	 * Returns whether responses rendered by JWt are compressed.
+	 * 
+	 * @see #setCompressResponses(boolean)
+	 */
+	public boolean compressResponses() {
+		return compressResponses;
+	}
+
+	/**
+	 * Sets the minimum size of a response before it is compressed.
+	 * <p>
+	 * Small responses (such as most JavaScript updates for a single event) do not
+	 * benefit from compression, and are sent as is.
+	 * <p>
+	 * The default value is 1024 bytes.
+	 * 
+	 * @param bytes the threshold, in bytes.
+	 */
+	public void setCompressionThreshold(int bytes) {
+		this.compressionThreshold = bytes;
+	}
+
+	/**
+	 * Returns the minimum size of a response before it is compressed.
+	 * 
+	 * @see #setCompressionThreshold(int)
+	 */
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	/**
+	 * Sets whether the head of a page is sent before its body is rendered.
+	 * <p>
+	 * When enabled, the head of a page (with the links to style sheets and scripts,
+	 * and the bootstrap script of a progressive page) is sent to the browser as soon
+	 * as it is ready, so that the browser can start loading these while the widget
+	 * tree is being rendered. The response then uses a chunked transfer encoding.
+	 * <p>
+	 * This has two drawbacks. Since the response is committed before the body is
+	 * rendered, an exception while rendering the body can no longer be turned into
+	 * an error response: the browser receives a truncated page with a 200 status.
+	 * And the page is not compressed (see {@link #setCompressResponses(boolean)}),
+	 * since the head cannot be flushed through a compressed stream.
+	 * <p>
+	 * The default value is <code>false</code>.
+	 */
+	public void setStreamMainPage(boolean enabled) {
+		this.streamMainPage = enabled;
+	}
+
+	/**
+	 * Returns whether the head of a page is sent before its body is rendered.
+	 * 
+	 * @see #setStreamMainPage(boolean)
+	 */
+	public boolean streamMainPage() {
+		return streamMainPage;
+	}
+
+	/**
+	 * Sets whether the JavaScript of widgets is served as a shared, cacheable script.
+	 * <p>
+	 * Many widgets (e.g. {@link WTreeView}, {@link WTableView}) come with a substantial
+	 * amount of JavaScript, which is otherwise included in the script of every session
+	 * that uses them. When enabled, this JavaScript is collected in a single script which
+	 * is shared by all sessions, and cached by the browser (its URL changes with its
+	 * contents). A session then only refers to the functions it needs.
+	 * <p>
+	 * This changes when the JavaScript objects of widgets are created: all objects
+	 * (and prototypes) in the shared script are evaluated when it is loaded, i.e.
+	 * before the first script of the session, rather than when a widget that uses them
+	 * is first rendered. Custom widgets should therefore not rely on the state of the
+	 * page when their JavaScript objects are evaluated.
+	 * <p>
+	 * The default value is <code>false</code>.
+	 */
+	public void setBundlePreambles(boolean enabled) {
+		this.bundlePreambles = enabled;
+	}
+
+	/**
+	 * Returns whether the JavaScript of widgets is served as a shared, cacheable script.
+	 * 
+	 * @see #setBundlePreambles(boolean)
+	 */
+	public boolean bundlePreambles() {
+		return bundlePreambles;
+	}
+
+	/**
+	 * Sets whether the JavaScript learned for stateless slots is shared between sessions.
+	 * <p>
+	 * The JavaScript of a {@link AbstractEventSignal.PreLearnListener} is learned by
+	 * triggering and undoing the listener, for every widget that uses it, in every session.
+	 * When enabled, the learned JavaScript is kept as a template in which the ids of the
+	 * affected widgets are located relative to the widget that emits the signal. A session
+	 * then reuses the template for the same listener class, signal and widget class,
+	 * provided that the affected widgets are found at the same place in its widget tree.
+	 * <p>
+	 * This is only correct when the effect of these listeners depends only on the
+	 * structure of the widget tree, and not on other state of the session (such as the
+	 * text of a widget, or a custom widget id that differs between sessions).
+	 * <p>
+	 * In particular, listeners which depend on per-instance values are unsafe: for
+	 * example, an anonymous listener created in a loop that calls
+	 * <code>stack.setCurrentIndex(i)</code> for menu item <code>i</code> would reuse
+	 * the JavaScript learned for the first item for every item. Listener classes with
+	 * instance fields, including the variables captured by an anonymous class, are
+	 * therefore never shared.
+	 * <p>
+	 * Values that a listener reads from its enclosing object (e.g. a field of the
+	 * widget that created it) cannot be inspected. As a safeguard, the template that is
+	 * learned for a first widget is only used once the JavaScript learned for a second
+	 * widget results in the same template; otherwise the listener is never shared. This
+	 * does not detect a value that is the same for the first two widgets but differs
+	 * for later ones: listeners that depend on such values must not be used with this
+	 * option.
+	 * <p>
+	 * The default value is <code>false</code>.
+	 */
+	public void setShareLearnedSlots(boolean enabled) {
+		this.shareLearnedSlots = enabled;
+	}
+
+	/**
+	 * Returns whether the JavaScript learned for stateless slots is shared between sessions.
+	 * 
+	 * @see #setShareLearnedSlots(boolean)
+	 */
+	public boolean shareLearnedSlots() {
+		return shareLearnedSlots;
+	}
+
+	/**
+	 * Sets whether WebSockets are used for server push and event delivery.
+	 * <p>
+	 * When enabled, the browser opens a WebSocket connection to the session
+	 * (at the session URL, with <code>request=ws</code>), and uses it to send events
+	 * and to receive updates. When the connection cannot be established, it falls back
+	 * to Ajax requests and long polling.
+	 * <p>
+	 * JWt does not depend on a particular WebSocket API: the connections need to be
+	 * accepted by an endpoint that adapts the servlet container's WebSocket API, see
+	 * {@link WebSocketConnection}.
+	 * <p>
+	 * The default value is <code>false</code>.
+	 */
+	public void setWebSockets(boolean webSockets) {
+		this.webSockets = webSockets;
+	}
+
+	/**
+	 * Returns whether WebSockets are used.
+	 * 
+	 * @see #setWebSockets(boolean)
+	 */
+	public boolean webSockets() {
+		return webSockets;
+	}
+
+	/**
+	 * Sets the maximum size of an uploaded file.
+	 * <p>
+	 * Uploaded files are streamed directly to their spool file, and thus never held in memory.
+	 * When a file exceeds this size, the remainder of the request is discarded, and
+	 * {@link WApplication#requestTooLarge()} is emitted.
+	 * <p>
+	 * The default value is -1 (no limit).
+	 * 
+	 * @param bytes the maximum size, in bytes, or -1.
+	 */
+	public void setUploadFileSizeMax(long bytes) {
+		this.uploadFileSizeMax = bytes;
 	}
 
+	/**
+	 * Returns the maximum size of an uploaded file.
+	 * 
+	 * @see #setUploadFileSizeMax(long)
+	 */
+	public long getUploadFileSizeMax() {
+		return uploadFileSizeMax;
+	}
+
+	/**
+	 * Sets the maximum size of a (non-file) field in a multipart request.
+	 * <p>
+	 * Unlike files, fields are kept in memory, and this thus bounds the memory used by a
+	 * single field. When a field exceeds this size, the remainder of the request is discarded,
+	 * and {@link WApplication#requestTooLarge()} is emitted.
+	 * <p>
+	 * The default value is -1 (no limit).
+	 * 
+	 * @param bytes the maximum size, in bytes, or -1.
+	 */
+	public void setUploadFieldSizeMax(long bytes) {
+		this.uploadFieldSizeMax = bytes;
+	}
+
+	/**
+	 * Returns the maximum size of a field in a multipart request.
+	 * 
+	 * @see #setUploadFieldSizeMax(long)
+	 */
+	public long getUploadFieldSizeMax() {
+		return uploadFieldSizeMax;
+	}
+
+	/**
+	 * Sets the number of threads that process requests.
+	 * <p>
+	 * By default (0), requests are processed on the servlet container's thread pool,
+	 * which is shared with other servlets. When set to a positive number, JWt processes
+	 * requests on a pool of its own, of this size. Requests which cannot be processed
+	 * immediately are queued (see {@link #setRequestQueueSize(int)}).
+	 * <p>
+	 * This only applies when the servlet container supports asynchronous processing.
+	 * 
+	 * @param threads the number of threads, or 0.
+	 * 
+	 * @see WtServlet#getRequestQueueDepth()
+	 */
+	public void setRequestThreads(int threads) {
+		this.requestThreads = threads;
+	}
+
+	/**
+	 * Returns the number of threads that process requests.
+	 * 
+	 * @see #setRequestThreads(int)
+	 */
+	public int getRequestThreads() {
+		return requestThreads;
+	}
+
+	/**
+	 * Sets the maximum number of requests that wait for a thread.
+	 * <p>
+	 * When the queue is full, further requests are refused with a 503 (Service
+	 * Unavailable) response. A value of 0 or less means that the queue is unbounded.
+	 * <p>
+	 * The default value is 1000.
+	 * 
+	 * @see #setRequestThreads(int)
+	 */
+	public void setRequestQueueSize(int size) {
+		this.requestQueueSize = size;
+	}
+
+	/**
+	 * Returns the maximum number of requests that wait for a thread.
+	 * 
+	 * @see #setRequestQueueSize(int)
+	 */
+	public int getRequestQueueSize() {
+		return requestQueueSize;
+	}
+
+	/**
+	 * Sets whether each request is processed by a virtual thread.
+	 * <p>
+	 * Virtual threads are cheap, and do not occupy a platform thread while they block
+	 * (e.g. in a database call), which allows request processing to scale beyond the
+	 * size of a thread pool. This requires a runtime that supports virtual threads
+	 * (Java 21 or later); otherwise requests are processed as configured with
+	 * {@link #setRequestThreads(int)}.
+	 * <p>
+	 * The default value is <code>false</code>.
+	 */
+	public void setVirtualThreads(boolean enabled) {
+		this.virtualThreads = enabled;
+	}
+
+	/**
+	 * Returns whether each request is processed by a virtual thread.
+	 * 
+	 * @see #setVirtualThreads(boolean)
+	 */
+	public boolean useVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * Sets the executor that processes requests.
+	 * <p>
+	 * This takes precedence over {@link #setRequestThreads(int)} and
+	 * {@link #setVirtualThreads(boolean)}. The executor is not shut down by JWt. When it
+	 * refuses a request with a {@link java.util.concurrent.RejectedExecutionException},
+	 * a 503 (Service Unavailable) response is sent.
+	 * <p>
+	 * The default value is <code>null</code>.
+	 */
+	public void setRequestExecutor(Executor executor) {
+		this.requestExecutor = executor;
+	}
+
+	/**
+	 * Returns the executor that processes requests.
+	 * 
+	 * @see #setRequestExecutor(Executor)
+	 */
+	public Executor getRequestExecutor() {
+		return requestExecutor;
+	}
+
+	/**
+	 * Sets the number of threads that run the functions posted to sessions.
+	 * <p>
+	 * Functions posted with {@link WtServlet#post(String, Runnable)} are run by a pool of
+	 * its own, of this size, so that the thread which posts a function never waits for a
+	 * session's lock.
+	 * <p>
+	 * The default value is 0, which uses as many threads as there are processors.
+	 */
+	public void setPostThreads(int threads) {
+		this.postThreads = threads;
+	}
+
+	/**
+	 * Returns the number of threads that run the functions posted to sessions.
+	 * 
+	 * @see #setPostThreads(int)
+	 */
+	public int getPostThreads() {
+		return postThreads;
+	}
+
+	/**
+	 * Sets the maximum number of sessions.
+	 * <p>
+	 * When this number of sessions is reached, a request which would create a new
+	 * session is refused with a 503 (Service Unavailable) response, without allocating
+	 * the session. Requests for existing sessions are not affected.
+	 * <p>
+	 * The default value is 0 (no limit).
+	 * 
+	 * @see #setOverloadPage(String)
+	 * @see WtServlet#getRejectedSessions()
+	 */
+	public void setMaxSessions(int sessions) {
+		this.maxSessions = sessions;
+	}
+
+	/**
+	 * Returns the maximum number of sessions.
+	 * 
+	 * @see #setMaxSessions(int)
+	 */
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+
+	/**
+	 * Sets the maximum rate at which new sessions are created.
+	 * <p>
+	 * The rate is expressed in sessions per second, and allows bursts of up to one
+	 * second worth of sessions. Requests which would exceed this rate are refused with a
+	 * 503 (Service Unavailable) response, without allocating a session.
+	 * <p>
+	 * The default value is 0 (no limit).
+	 */
+	public void setMaxSessionRate(double sessionsPerSecond) {
+		this.maxSessionRate = sessionsPerSecond;
+	}
+
+	/**
+	 * Returns the maximum rate at which new sessions are created.
+	 * 
+	 * @see #setMaxSessionRate(double)
+	 */
+	public double getMaxSessionRate() {
+		return maxSessionRate;
+	}
+
+	/**
+	 * Sets the maximum number of requests that are processed concurrently.
+	 * <p>
+	 * This counts requests from the moment they are received until they have been
+	 * handled by their session (including requests that wait for a thread, see
+	 * {@link #setRequestThreads(int)}). Excess requests are refused with a 503 (Service
+	 * Unavailable) response before they are parsed.
+	 * <p>
+	 * The default value is 0 (no limit).
+	 */
+	public void setMaxConcurrentRequests(int requests) {
+		this.maxConcurrentRequests = requests;
+	}
+
+	/**
+	 * Returns the maximum number of requests that are processed concurrently.
+	 * 
+	 * @see #setMaxConcurrentRequests(int)
+	 */
+	public int getMaxConcurrentRequests() {
+		return maxConcurrentRequests;
+	}
+
+	/**
+	 * Sets the page that is served to refused requests.
+	 * <p>
+	 * This is the name of a (static) HTML file, which is sent with the 503 (Service
+	 * Unavailable) response for requests that are refused because of
+	 * {@link #setMaxSessions(int)}, {@link #setMaxSessionRate(double)} or
+	 * {@link #setMaxConcurrentRequests(int)}.
+	 * <p>
+	 * The default value is <code>null</code> (an empty response is sent).
+	 */
+	public void setOverloadPage(String fileName) {
+		this.overloadPage = fileName;
+	}
+
+	/**
+	 * Returns the page that is served to refused requests.
+	 * 
+	 * @see #setOverloadPage(String)
+	 */
+	public String getOverloadPage() {
+		return overloadPage;
+	}
+
+	/**
+	 * Sets the delay suggested to refused clients.
+	 * <p>
+	 * This is the value of the Retry-After header sent with a 503 (Service
+	 * Unavailable) response.
+	 * <p>
+	 * The default value is 5 seconds.
+	 */
+	public void setOverloadRetryAfter(int seconds) {
+		this.overloadRetryAfter = seconds;
+	}
+
+	/**
+	 * Returns the delay suggested to refused clients.
+	 * 
+	 * @see #setOverloadRetryAfter(int)
+	 */
+	public int getOverloadRetryAfter() {
+		return overloadRetryAfter;
+	}
+
+	/**
+	 * Sets the tracer for the phases of request handling.
+	 * <p>
+	 * The default value is <code>null</code> (requests are not traced).
+	 * 
+	 * @see RequestTracer
+	 */
+	public void setRequestTracer(RequestTracer tracer) {
+		this.requestTracer = tracer;
+	}
+
+	/**
+	 * Returns the tracer for the phases of request handling.
+	 * 
+	 * @see #setRequestTracer(RequestTracer)
+	 */
+	public RequestTracer getRequestTracer() {
+		return requestTracer;
+	}
+
+	/*
+	 * The following are not yet enabled for JWt
+	 */
+
 	boolean sessionIdCookie() {
 		return false;
 	}
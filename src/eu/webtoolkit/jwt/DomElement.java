@@ -82,14 +82,14 @@ public class DomElement {
 		this.javaScript_ = new EscapeOStream();
 		this.javaScriptEvenWhenDeleted_ = "";
 		this.var_ = "";
-		this.attributes_ = new HashMap<String, String>();
-		this.properties_ = new TreeMap<Property, String>();
-		this.eventHandlers_ = new HashMap<String, DomElement.EventHandler>();
-		this.childrenToAdd_ = new ArrayList<DomElement.ChildInsertion>();
-		this.childrenToSave_ = new ArrayList<String>();
-		this.updatedChildren_ = new ArrayList<DomElement>();
-		this.childrenHtml_ = new EscapeOStream();
-		this.timeouts_ = new ArrayList<DomElement.TimeoutEvent>();
+		this.attributes_ = Collections.emptyMap();
+		this.properties_ = Collections.emptyMap();
+		this.eventHandlers_ = Collections.emptyMap();
+		this.childrenToAdd_ = Collections.emptyList();
+		this.childrenToSave_ = Collections.emptyList();
+		this.updatedChildren_ = Collections.emptyList();
+		this.childrenHtml_ = null;
+		this.timeouts_ = Collections.emptyList();
 	}
 
 	/**
@@ -220,14 +220,17 @@ public class DomElement {
 			this.numManipulations_ += 2;
 			if (this.wasEmpty_
 					&& this.canWriteInnerHTML(WApplication.getInstance())) {
-				child.asHTML(this.childrenHtml_, this.javaScript_,
-						this.timeouts_);
+				child.asHTML(this.getChildrenHtmlStream(), this.javaScript_,
+						this.getTimeoutsList());
 				;
 			} else {
-				this.childrenToAdd_
-						.add(new DomElement.ChildInsertion(-1, child));
+				this.getChildrenToAddList().add(
+						new DomElement.ChildInsertion(-1, child));
 			}
 		} else {
+			if (this.updatedChildren_.isEmpty()) {
+				this.updatedChildren_ = new ArrayList<DomElement>();
+			}
 			this.updatedChildren_.add(child);
 		}
 	}
@@ -240,7 +243,8 @@ public class DomElement {
 	 */
 	public void insertChildAt(DomElement child, int pos) {
 		++this.numManipulations_;
-		this.childrenToAdd_.add(new DomElement.ChildInsertion(pos, child));
+		this.getChildrenToAddList().add(
+				new DomElement.ChildInsertion(pos, child));
 	}
 
 	/**
@@ -251,6 +255,9 @@ public class DomElement {
 	 * reference the same id will be replaced with the saved child.
 	 */
 	public void saveChild(String id) {
+		if (this.childrenToSave_.isEmpty()) {
+			this.childrenToSave_ = new ArrayList<String>();
+		}
 		this.childrenToSave_.add(id);
 	}
 
@@ -259,6 +266,9 @@ public class DomElement {
 	 */
 	public void setAttribute(String attribute, String value) {
 		++this.numManipulations_;
+		if (this.attributes_.isEmpty()) {
+			this.attributes_ = new HashMap<String, String>();
+		}
 		this.attributes_.put(attribute, value);
 	}
 
@@ -289,7 +299,7 @@ public class DomElement {
 	 */
 	public void setProperty(Property property, String value) {
 		++this.numManipulations_;
-		this.properties_.put(property, value);
+		this.getPropertiesMap().put(property, value);
 		if (property.getValue() >= Property.PropertyStyleMinWidth.getValue()
 				&& property.getValue() <= Property.PropertyStyleMaxHeight
 						.getValue()) {
@@ -332,7 +342,7 @@ public class DomElement {
 	/**
 	 * Sets a whole map of properties.
 	 */
-	public void setProperties(SortedMap<Property, String> properties) {
+	public void setProperties(Map<Property, String> properties) {
 		for (Iterator<Map.Entry<Property, String>> i_it = properties.entrySet()
 				.iterator(); i_it.hasNext();) {
 			Map.Entry<Property, String> i = i_it.next();
@@ -343,7 +353,7 @@ public class DomElement {
 	/**
 	 * Returns all properties currently set.
 	 */
-	public SortedMap<Property, String> getProperties() {
+	public Map<Property, String> getProperties() {
 		return this.properties_;
 	}
 
@@ -392,7 +402,7 @@ public class DomElement {
 			}
 		}
 		++this.numManipulations_;
-		this.eventHandlers_.put(eventName, new DomElement.EventHandler(js
+		this.getEventHandlersMap().put(eventName, new DomElement.EventHandler(js
 				.toString(), signalName));
 	}
 
@@ -414,7 +424,7 @@ public class DomElement {
 	 * This sets a JavaScript event handler.
 	 */
 	public void setEvent(String eventName, String jsCode) {
-		this.eventHandlers_.put(eventName, new DomElement.EventHandler(jsCode,
+		this.getEventHandlersMap().put(eventName, new DomElement.EventHandler(jsCode,
 				""));
 	}
 
@@ -906,7 +916,7 @@ public class DomElement {
 				String l = this.properties_.get(Property.PropertyClass);
 				if (l != null) {
 					out.append(l);
-					SortedMap<Property, String> map = this.properties_;
+					Map<Property, String> map = this.properties_;
 					map.remove(Property.PropertyClass);
 				}
 				out.append('"');
@@ -1076,7 +1086,7 @@ public class DomElement {
 				out.append('>');
 				if (innerHTML.length() != 0) {
 					DomElement self = this;
-					self.childrenHtml_.append(innerHTML);
+					self.getChildrenHtmlStream().append(innerHTML);
 				}
 				return;
 			}
@@ -1087,12 +1097,12 @@ public class DomElement {
 							timeouts);
 				}
 				out.append(innerHTML);
-				out.append(this.childrenHtml_.toString());
+				out.append(this.getChildrenHtml());
 				if (renderedType == DomElementType.DomElement_DIV
 						&& app.getEnvironment().getAgent() == WEnvironment.UserAgent.IE6
 						&& innerHTML.length() == 0
 						&& this.childrenToAdd_.isEmpty()
-						&& this.childrenHtml_.isEmpty()) {
+						&& !this.hasChildrenHtml()) {
 					out.append("&nbsp;");
 				}
 				out.append("</").append(elementNames_[renderedType.getValue()])
@@ -1467,13 +1477,14 @@ public class DomElement {
 					}
 					expr.append(")");
 					self.properties_.remove(Property.PropertyStyleWidth);
-					self.properties_.put(Property.PropertyStyleWidthExpression,
+					self.getPropertiesMap().put(
+							Property.PropertyStyleWidthExpression,
 							expr.toString());
 				}
 			}
 			String i = self.properties_.get(Property.PropertyStyleMinHeight);
 			if (i != null) {
-				self.properties_.put(Property.PropertyStyleHeight, i);
+				self.getPropertiesMap().put(Property.PropertyStyleHeight, i);
 			}
 		}
 	}
@@ -1742,16 +1753,16 @@ public class DomElement {
 	// private String createAsJavaScript(EscapeOStream out, String parentVar,
 	// int pos, WApplication app) ;
 	private void renderInnerHtmlJS(EscapeOStream out, WApplication app) {
-		if (!this.childrenHtml_.isEmpty() || this.wasEmpty_
+		if (this.hasChildrenHtml() || this.wasEmpty_
 				&& this.canWriteInnerHTML(app)) {
 			if (this.type_ == DomElementType.DomElement_DIV
 					&& app.getEnvironment().getAgent() == WEnvironment.UserAgent.IE6
 					|| !this.childrenToAdd_.isEmpty()
-					|| !this.childrenHtml_.isEmpty()) {
+					|| this.hasChildrenHtml()) {
 				this.declare(out);
 				out.append("Wt3_3_0.setHtml(").append(this.var_).append(",'");
 				out.pushEscape(EscapeOStream.RuleSet.JsStringLiteralSQuote);
-				out.append(this.childrenHtml_.toString());
+				out.append(this.getChildrenHtml());
 				List<DomElement.TimeoutEvent> timeouts = new ArrayList<DomElement.TimeoutEvent>();
 				EscapeOStream js = new EscapeOStream();
 				for (int i = 0; i < this.childrenToAdd_.size(); ++i) {
@@ -1760,7 +1771,7 @@ public class DomElement {
 				if (this.type_ == DomElementType.DomElement_DIV
 						&& app.getEnvironment().getAgent() == WEnvironment.UserAgent.IE6
 						&& this.childrenToAdd_.isEmpty()
-						&& this.childrenHtml_.isEmpty()) {
+						&& !this.hasChildrenHtml()) {
 					out.append("&nbsp;");
 				}
 				out.popEscape();
@@ -1816,7 +1827,7 @@ public class DomElement {
 	private String var_;
 	private boolean declared_;
 	private Map<String, String> attributes_;
-	private SortedMap<Property, String> properties_;
+	private Map<Property, String> properties_;
 	private Map<String, DomElement.EventHandler> eventHandlers_;
 
 	static class ChildInsertion {
@@ -1842,6 +1853,56 @@ public class DomElement {
 	private List<DomElement> updatedChildren_;
 	private EscapeOStream childrenHtml_;
 	private List<DomElement.TimeoutEvent> timeouts_;
+
+	/*
+	 * Most elements only use a few of the collections above: these are therefore
+	 * created on first use, and shared empty collections are used until then.
+	 * Properties are kept in an EnumMap (an array indexed by the property's
+	 * ordinal), which iterates in the same order as the TreeMap did.
+	 */
+	private Map<Property, String> getPropertiesMap() {
+		if (this.properties_.isEmpty()) {
+			this.properties_ = new EnumMap<Property, String>(Property.class);
+		}
+		return this.properties_;
+	}
+
+	private Map<String, DomElement.EventHandler> getEventHandlersMap() {
+		if (this.eventHandlers_.isEmpty()) {
+			this.eventHandlers_ = new HashMap<String, DomElement.EventHandler>();
+		}
+		return this.eventHandlers_;
+	}
+
+	private List<DomElement.ChildInsertion> getChildrenToAddList() {
+		if (this.childrenToAdd_.isEmpty()) {
+			this.childrenToAdd_ = new ArrayList<DomElement.ChildInsertion>();
+		}
+		return this.childrenToAdd_;
+	}
+
+	private List<DomElement.TimeoutEvent> getTimeoutsList() {
+		if (this.timeouts_.isEmpty()) {
+			this.timeouts_ = new ArrayList<DomElement.TimeoutEvent>();
+		}
+		return this.timeouts_;
+	}
+
+	private EscapeOStream getChildrenHtmlStream() {
+		if (this.childrenHtml_ == null) {
+			this.childrenHtml_ = new EscapeOStream();
+		}
+		return this.childrenHtml_;
+	}
+
+	private boolean hasChildrenHtml() {
+		return this.childrenHtml_ != null && !this.childrenHtml_.isEmpty();
+	}
+
+	private String getChildrenHtml() {
+		return this.childrenHtml_ != null ? this.childrenHtml_.toString() : "";
+	}
+
 	private static int nextId_ = 0;
 	private static String[] elementNames_ = { "a", "br", "button", "col",
 			"colgroup", "div", "fieldset", "form", "h1", "h2", "h3", "h4",
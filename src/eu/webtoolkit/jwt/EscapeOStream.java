@@ -6,7 +6,6 @@
 package eu.webtoolkit.jwt;
 
 import java.io.IOException;
-import java.util.ArrayList;
 
 public class EscapeOStream {
 	public enum RuleSet {
@@ -19,47 +18,37 @@ public class EscapeOStream {
 
 	public EscapeOStream(Appendable sink) {
 		sink_ = sink;
-		mixed_ = null;
-		special_ = "";
-		ruleSets_ = new ArrayList<RuleSet>();
+		rules_ = noRules_;
 	}
 
-	@SuppressWarnings("unchecked")
 	public EscapeOStream push() {
 		EscapeOStream result = new EscapeOStream(sink_);
 
-		result.ruleSets_ = (ArrayList<RuleSet>) ruleSets_.clone();
+		result.rules_ = rules_;
 
 		return result;
 	}
 
 	public void pushEscape(RuleSet rules) {
-		ruleSets_.add(rules);
-		mixRules();
+		rules_ = rules_.push(rules);
 	}
 
 	public void popEscape() {
-		ruleSets_.remove(ruleSets_.size() - 1);
-		mixRules();
+		rules_ = rules_.parent;
 	}
 
-
 	public EscapeOStream append(EscapeOStream stream) {
 		return append(stream.toString());
 	}
 
 	public EscapeOStream append(char c) {
 		try {
-			if (special_ == "")
-				sink_.append(c);
-			else {
-				int i = special_.indexOf(c);
+			String replacement = c < ESCAPED_RANGE ? rules_.replacements[c] : null;
 
-				if (i != -1)
-					sink_.append(mixed_.get(i).s);
-				else
-					sink_.append(c);
-			}
+			if (replacement == null)
+				sink_.append(c);
+			else
+				sink_.append(replacement);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -74,17 +63,15 @@ public class EscapeOStream {
 
 	public EscapeOStream append(String s, EscapeOStream rules) {
 		try {
-			if (rules.special_ == null) {
+			if (rules.rules_ == noRules_)
 				sink_.append(s);
-				return this;
-			} else
-				put(s, rules);
+			else
+				put(s, rules.rules_.replacements);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 
 		return this;
-
 	}
 
 	public EscapeOStream append(int i) {
@@ -108,140 +95,149 @@ public class EscapeOStream {
 
 
 	public boolean isEmpty() {
-		return sink_.toString().length() == 0;
+		if (sink_ instanceof CharSequence)
+			return ((CharSequence) sink_).length() == 0;
+		else
+			return sink_.toString().length() == 0;
 	}
 
 	public void flush() {
 	}
 
-	private Appendable sink_ = null;
-
-	private static class Entry {
-		public Entry(char c_, String s_) {
-			c = c_;
-			s = s_;
-		}
-
-		public Entry clone() {
-			return new Entry(c, s);
+	/*
+	 * Appends the unescaped runs of a string in bulk, and the replacement of each
+	 * escaped character.
+	 */
+	private void put(String s, String[] replacements) throws IOException {
+		int length = s.length();
+		int lastPos = 0;
+
+		for (int pos = 0; pos < length; ++pos) {
+			char c = s.charAt(pos);
+			if (c < ESCAPED_RANGE && replacements[c] != null) {
+				if (pos > lastPos)
+					sink_.append(s, lastPos, pos);
+				sink_.append(replacements[c]);
+				lastPos = pos + 1;
+			}
 		}
 
-		public char c;
-		public String s = "";
+		if (lastPos == 0)
+			sink_.append(s);
+		else if (lastPos < length)
+			sink_.append(s, lastPos, length);
 	}
 
-	private ArrayList<Entry> mixed_;
-	private String special_;
-
-	private void mixRules() {
-		int ruleSetsSize = ruleSets_.size();
+	public void clear() {
+		((StringBuilder)sink_).delete(0, ((StringBuilder)sink_).length());
+	}
 
-		if (ruleSetsSize == 0) {
-			mixed_ = null;
-			special_ = "";
-		} else if (ruleSetsSize == 1) {
-			mixed_ = standardSets_.get(ruleSets_.get(0).ordinal());
-			special_ = standardSetsSpecial_.get(ruleSets_.get(0).ordinal());
-		} else {
-			mixed_ = new ArrayList<Entry>();
-			for (int i = ruleSetsSize - 1; i >= 0; --i) {
-				ArrayList<Entry> toMix = standardSets_.get(ruleSets_.get(i).ordinal());
+	public String toString() {
+		return sink_.toString();
+	}
 
-				for (int j = 0; j < mixed_.size(); ++j)
-					for (int k = 0; k < toMix.size(); ++k)
-						mixed_.get(j).s = mixed_.get(j).s.replace(toMix.get(k).c + "", toMix.get(k).s);
+	/*
+	 * All escaped characters are ASCII.
+	 */
+	private static final int ESCAPED_RANGE = 128;
+
+	/*
+	 * The combined escaping rules of a stack of rule sets.
+	 *
+	 * Every combination of rule sets that is pushed is computed once, and kept in a tree
+	 * (rooted at noRules_), so that pushing and popping rule sets only follows a
+	 * reference.
+	 */
+	private static class Rules {
+		Rules(Rules parent, String[] replacements) {
+			this.parent = parent;
+			this.replacements = replacements;
+			this.children = new Rules[RuleSet.values().length];
+		}
 
-				for (int j = 0; j < toMix.size(); ++j) {
-					mixed_.add((Entry) toMix.get(j).clone());
-					special_ += toMix.get(j).c;
+		synchronized Rules push(RuleSet rules) {
+			Rules result = children[rules.ordinal()];
+
+			if (result == null) {
+				/*
+				 * A character is escaped by the innermost rule set first, and the
+				 * result is escaped by each outer rule set in turn.
+				 */
+				String[] inner = standardSets_[rules.ordinal()];
+				String[] mixed = new String[ESCAPED_RANGE];
+				for (int c = 0; c < ESCAPED_RANGE; ++c) {
+					String s = inner[c] != null ? inner[c] : String.valueOf((char) c);
+					s = escape(s, replacements);
+					if (!s.equals(String.valueOf((char) c)))
+						mixed[c] = s;
 				}
+
+				result = children[rules.ordinal()] = new Rules(this, mixed);
 			}
-		}
-	}
 
-	private void put(String s, EscapeOStream rules) {
-		try {
-			char [] sA = s.toCharArray();
-			char [] specialA = rules.special_.toCharArray();
+			return result;
+		}
 
-			for (int pos = 0; pos != -1;) {
-				int lastPos = pos;
-				pos = StringUtils.strpbrk(sA, pos, specialA);
-				if (pos != -1) {
-					char f = sA[pos];
+		private static String escape(String s, String[] replacements) {
+			StringBuilder result = new StringBuilder();
+			for (int i = 0; i < s.length(); ++i) {
+				char c = s.charAt(i);
+				if (c < ESCAPED_RANGE && replacements[c] != null)
+					result.append(replacements[c]);
+				else
+					result.append(c);
+			}
+			return result.toString();
+		}
 
-					sink_.append(s.substring(lastPos, pos));
+		final Rules parent;
+		final String[] replacements;
+		private final Rules[] children;
+	}
 
-					for (int i = 0; i < rules.mixed_.size(); ++i) {
-						if (rules.mixed_.get(i).c == f) {
-							sink_.append(rules.mixed_.get(i).s);
-							break;
-						}
-					}
+	private Appendable sink_ = null;
+	private Rules rules_;
 
-					pos = pos + 1;
+	private static String[][] standardSets_ = new String[RuleSet.values().length][];
+	private static Rules noRules_;
 
-				} else {
-					sink_.append(s.substring(lastPos));
-				}
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-	}
-	
-	public void clear() {
-		((StringBuilder)sink_).delete(0, ((StringBuilder)sink_).length());
-	}
-	
-	public String toString() {
-		return sink_.toString();
+	private static String[] standardSet(RuleSet rules) {
+		String[] result = new String[ESCAPED_RANGE];
+		standardSets_[rules.ordinal()] = result;
+		return result;
 	}
 
-	private ArrayList<RuleSet> ruleSets_ = new ArrayList<RuleSet>();
-
-	private static ArrayList<String> standardSetsSpecial_ = new ArrayList<String>();
-	private static ArrayList<Entry> htmlAttributeEntries_ = new ArrayList<Entry>();
-	private static ArrayList<Entry> jsStringLiteralSQuoteEntries_ = new ArrayList<Entry>();
-	private static ArrayList<Entry> jsStringLiteralDQuoteEntries_ = new ArrayList<Entry>();
-	private static ArrayList<ArrayList<Entry>> standardSets_ = new ArrayList<ArrayList<Entry>>();
-	private static ArrayList<Entry> plainTextEntries_ = new ArrayList<Entry>();
-	private static ArrayList<Entry> plainTextEntriesNewLines_ = new ArrayList<Entry>(); 
-	
 	static {
-		standardSetsSpecial_.add("&\"<");
-		standardSetsSpecial_.add("\\\n\r\t'");
-		standardSetsSpecial_.add("\\\n\r\t\"");
-		standardSetsSpecial_.add("&><");
-		standardSetsSpecial_.add("&><\n");
-
-		htmlAttributeEntries_.add(new Entry('&', "&amp;"));
-		htmlAttributeEntries_.add(new Entry('\"', "&#34;"));
-		htmlAttributeEntries_.add(new Entry('<', "&lt;"));
-		
-		plainTextEntries_.add(new Entry('&', "&amp;"));
-		plainTextEntries_.add(new Entry('>', "&gt;"));
-		plainTextEntries_.add(new Entry('<', "&lt;"));
-		
-		plainTextEntriesNewLines_.addAll(plainTextEntries_);
-		plainTextEntriesNewLines_.add(new Entry('\n', "<br />"));
-
-		jsStringLiteralSQuoteEntries_.add(new Entry('\\', "\\\\"));
-		jsStringLiteralSQuoteEntries_.add(new Entry('\n', "\\n"));
-		jsStringLiteralSQuoteEntries_.add(new Entry('\r', "\\r"));
-		jsStringLiteralSQuoteEntries_.add(new Entry('\t', "\\t"));
-		jsStringLiteralSQuoteEntries_.add(new Entry('\'', "\\'"));
-
-		jsStringLiteralDQuoteEntries_.add(new Entry('\\', "\\\\"));
-		jsStringLiteralDQuoteEntries_.add(new Entry('\n', "\\n"));
-		jsStringLiteralDQuoteEntries_.add(new Entry('\r', "\\r"));
-		jsStringLiteralDQuoteEntries_.add(new Entry('\t', "\\t"));
-		jsStringLiteralDQuoteEntries_.add(new Entry('"', "\\\""));
-
-		standardSets_.add(htmlAttributeEntries_);
-		standardSets_.add(jsStringLiteralSQuoteEntries_);
-		standardSets_.add(jsStringLiteralDQuoteEntries_);
-		standardSets_.add(plainTextEntries_);
-		standardSets_.add(plainTextEntriesNewLines_);
+		String[] htmlAttribute = standardSet(RuleSet.HtmlAttribute);
+		htmlAttribute['&'] = "&amp;";
+		htmlAttribute['\"'] = "&#34;";
+		htmlAttribute['<'] = "&lt;";
+
+		String[] plainText = standardSet(RuleSet.PlainText);
+		plainText['&'] = "&amp;";
+		plainText['>'] = "&gt;";
+		plainText['<'] = "&lt;";
+
+		String[] plainTextNewLines = standardSet(RuleSet.PlainTextNewLines);
+		plainTextNewLines['&'] = "&amp;";
+		plainTextNewLines['>'] = "&gt;";
+		plainTextNewLines['<'] = "&lt;";
+		plainTextNewLines['\n'] = "<br />";
+
+		String[] jsStringLiteralSQuote = standardSet(RuleSet.JsStringLiteralSQuote);
+		jsStringLiteralSQuote['\\'] = "\\\\";
+		jsStringLiteralSQuote['\n'] = "\\n";
+		jsStringLiteralSQuote['\r'] = "\\r";
+		jsStringLiteralSQuote['\t'] = "\\t";
+		jsStringLiteralSQuote['\''] = "\\'";
+
+		String[] jsStringLiteralDQuote = standardSet(RuleSet.JsStringLiteralDQuote);
+		jsStringLiteralDQuote['\\'] = "\\\\";
+		jsStringLiteralDQuote['\n'] = "\\n";
+		jsStringLiteralDQuote['\r'] = "\\r";
+		jsStringLiteralDQuote['\t'] = "\\t";
+		jsStringLiteralDQuote['"'] = "\\\"";
+
+		noRules_ = new Rules(null, new String[ESCAPED_RANGE]);
 	}
 }
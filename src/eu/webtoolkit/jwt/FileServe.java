@@ -8,6 +8,8 @@ package eu.webtoolkit.jwt;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 class FileServe {
 	public FileServe(String contents) {
@@ -33,6 +35,19 @@ class FileServe {
 		setVar(name, String.valueOf(i));
 	}
 
+	/*
+	 * Returns a key which identifies the output of this template, given the
+	 * current conditions and variables.
+	 */
+	public String getKey() {
+		StringBuilder result = new StringBuilder();
+		for (Map.Entry<String, Boolean> c : new TreeMap<String, Boolean>(conditions_).entrySet())
+			result.append(c.getKey()).append(c.getValue() ? '+' : '-').append(';');
+		for (Map.Entry<String, String> v : new TreeMap<String, String>(vars_).entrySet())
+			result.append(v.getKey()).append('=').append(v.getValue()).append(';');
+		return result.toString();
+	}
+
 	public void stream(StringBuilder out) throws IOException {
 		this.streamUntil(out, "");
 	}
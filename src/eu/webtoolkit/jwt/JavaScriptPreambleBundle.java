@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import eu.webtoolkit.jwt.utils.HttpUtils;
+import eu.webtoolkit.jwt.utils.StreamUtils;
+
+/*
+ * JVM-wide bundle of the JavaScript preambles of the widgets (WJavaScriptPreamble).
+ *
+ * Every class-scoped preamble that is loaded by a session is registered in the bundle,
+ * which is served as a single script with a session-independent, content-versioned URL,
+ * so that a browser downloads and caches it once. A session that loads the bundle
+ * (as its first script library) then only needs a one-line reference for each preamble
+ * that it uses, instead of its full source.
+ *
+ * The bundle only grows (for a given JWt build the set of preambles is fixed), so that
+ * the current bundle always contains the preambles of any earlier version: a session
+ * only references the preambles of the version it loaded, and streams the source of
+ * preambles that were registered later.
+ *
+ * A preamble is registered when a session first streams it, which happens often while
+ * the application warms up. The bundle itself is only built when it is needed (for a
+ * new session, or to serve it) and preambles have been registered since it was last
+ * built.
+ */
+class JavaScriptPreambleBundle {
+	static final String SYMBOL = "Wt3_3_0_preambles";
+	private static final String REQUEST = "request=preambles";
+
+	static class Snapshot {
+		private Map<String, String> sources;
+		private byte[] data;
+		private byte[] gzipData;
+		private String eTag;
+		private String version;
+
+		Snapshot(Map<String, String> sources) {
+			this.sources = sources;
+
+			StringBuilder js = new StringBuilder();
+			js.append("window.").append(SYMBOL).append(" = {};\n");
+			for (Map.Entry<String, String> e : sources.entrySet())
+				js.append(SYMBOL).append('[').append(WWebWidget.jsStringLiteral(e.getKey())).append("] = ")
+						.append(e.getValue()).append(";\n");
+
+			try {
+				this.data = js.toString().getBytes("UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				throw new RuntimeException(e);
+			}
+			this.gzipData = StreamUtils.gzip(data);
+			this.eTag = HttpUtils.computeETag(data);
+			this.version = eTag.substring(1, eTag.length() - 1);
+		}
+
+		boolean isEmpty() {
+			return sources.isEmpty();
+		}
+
+		/*
+		 * Returns whether the bundle defines a preamble (with the same source).
+		 */
+		boolean contains(WJavaScriptPreamble preamble) {
+			String src = sources.get(preamble.name);
+			return src != null && src.equals(preamble.src);
+		}
+
+		/*
+		 * Returns the (relative) URL of this version of the bundle for a session.
+		 */
+		String getUrl(WebSession session) {
+			return session.getDeploymentPath() + "?" + REQUEST + "&v=" + version;
+		}
+	}
+
+	private static Map<String, String> sources = new LinkedHashMap<String, String>();
+	private static Map<String, Boolean> registered = new ConcurrentHashMap<String, Boolean>();
+	private static volatile Snapshot snapshot = new Snapshot(Collections.<String, String> emptyMap());
+	private static volatile boolean changed = false;
+
+	/*
+	 * Registers a preamble that is loaded by a session.
+	 */
+	static void register(WJavaScriptPreamble preamble) {
+		if (preamble.scope != JavaScriptScope.WtClassScope || registered.containsKey(preamble.name))
+			return;
+
+		synchronized (JavaScriptPreambleBundle.class) {
+			if (sources.containsKey(preamble.name))
+				return;
+
+			sources.put(preamble.name, preamble.src);
+			registered.put(preamble.name, Boolean.TRUE);
+			changed = true;
+		}
+	}
+
+	/*
+	 * Returns the current bundle, building it if preambles were registered since it was
+	 * last built.
+	 */
+	static Snapshot getSnapshot() {
+		if (changed) {
+			synchronized (JavaScriptPreambleBundle.class) {
+				if (changed) {
+					snapshot = new Snapshot(Collections.unmodifiableMap(new LinkedHashMap<String, String>(sources)));
+					changed = false;
+				}
+			}
+		}
+
+		return snapshot;
+	}
+
+	static boolean isRequest(HttpServletRequest request) {
+		String query = request.getQueryString();
+		return "GET".equals(request.getMethod()) && query != null && query.startsWith(REQUEST);
+	}
+
+	/*
+	 * Serves the current bundle, which is a superset of any requested version. Only the
+	 * current version may be cached indefinitely.
+	 */
+	static void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		Snapshot current = getSnapshot();
+
+		response.setContentType("text/javascript; charset=UTF-8");
+		response.setHeader("ETag", current.eTag);
+		response.setHeader("Vary", "Accept-Encoding");
+		if (current.version.equals(request.getParameter("v")))
+			response.setHeader("Cache-Control", "max-age=31536000,public");
+		else
+			response.setHeader("Cache-Control", "no-cache");
+
+		if (HttpUtils.isNotModified(request, current.eTag, -1)) {
+			response.setStatus(304);
+			return;
+		}
+
+		byte[] data;
+		if (HttpUtils.acceptsGzip(request)) {
+			response.setHeader("Content-Encoding", "gzip");
+			data = current.gzipData;
+		} else
+			data = current.data;
+
+		response.setContentLength(data.length);
+		response.getOutputStream().write(data);
+	}
+}
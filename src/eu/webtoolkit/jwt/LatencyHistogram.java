@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations.
+ * <p>
+ * Durations are counted in buckets of exponentially increasing size: bucket <i>i</i>
+ * holds the durations of at least 2<sup><i>i</i></sup> and less than 2<sup><i>i</i>+1</sup>
+ * microseconds. Percentiles are thus estimated with a precision of a factor two, which is
+ * enough to tell apart the latencies that matter (microseconds, milliseconds, seconds),
+ * while recording a duration remains cheap and does not allocate.
+ *
+ * @see Metrics
+ */
+public class LatencyHistogram {
+	private static final int BUCKETS = 32;
+
+	private AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private StripedCounter count = new StripedCounter();
+	private StripedCounter total = new StripedCounter();
+	private AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos the duration, in nanoseconds.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+
+		long micros = nanos / 1000;
+		int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+		buckets.incrementAndGet(bucket);
+		count.increment();
+		total.add(nanos);
+
+		long m = max.get();
+		while (nanos > m && !max.compareAndSet(m, nanos))
+			m = max.get();
+	}
+
+	/**
+	 * Returns the number of recorded durations.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the mean duration, in milliseconds.
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : total.sum() / 1E6 / n;
+	}
+
+	/**
+	 * Returns the longest duration, in milliseconds.
+	 */
+	public double getMax() {
+		return max.get() / 1E6;
+	}
+
+	/**
+	 * Returns an estimate of a percentile, in milliseconds.
+	 * <p>
+	 * This returns the upper bound of the bucket that contains the percentile.
+	 *
+	 * @param percentile the percentile, between 0 and 100.
+	 */
+	public double getPercentile(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			counts[i] = buckets.get(i);
+			n += counts[i];
+		}
+
+		if (n == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(n * Math.max(0, Math.min(100, percentile)) / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] > 0)
+				return Math.min((1L << (i + 1)) / 1E3, getMax());
+		}
+
+		return getMax();
+	}
+}
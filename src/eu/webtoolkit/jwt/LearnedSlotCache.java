@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * JVM-wide cache of the JavaScript learned for stateless slots (pre-learned listeners).
+ *
+ * The learned JavaScript is kept as a template, keyed by the listener class, the class
+ * of the widget that emits the signal and the signal name. The ids of the widgets that
+ * occur in the JavaScript are the parameters of the template: each of them is located
+ * by a path in the widget tree, relative to the emitting widget. Instantiating a template
+ * for another widget resolves these paths (checking the class of each widget that is
+ * found), so that a session does not need to trigger and undo the listener again.
+ *
+ * JavaScript that contains something that looks like an object id, but which is not the
+ * id of a widget that can be located, is never cached.
+ *
+ * The key does not capture the state of the listener itself: two listeners of the same
+ * class which hold different values (e.g. an index, captured by an anonymous class in a
+ * loop) would share the JavaScript learned for the first one. Therefore only listener
+ * classes without instance fields, other than the reference to their enclosing
+ * instance, are cached.
+ *
+ * The state of the enclosing instance (e.g. a field of the widget that created the
+ * listener) may affect the JavaScript as well, but cannot be inspected. A template is
+ * therefore only used once it has been confirmed: the JavaScript learned for a second
+ * widget must result in the same template (the same text, apart from the widget ids,
+ * and the same targets). Otherwise, the listener is never cached. This does not detect
+ * state that is the same for the first two widgets, but differs for later ones.
+ *
+ * See Configuration.setShareLearnedSlots()
+ */
+class LearnedSlotCache {
+	private static final Pattern TOKEN = Pattern.compile("[A-Za-z0-9_]+");
+	private static final Pattern OBJECT_ID = Pattern.compile("([A-Za-z0-9]*_)?o[0-9a-f]+");
+	private static final Pattern OBJECT_ID_PREFIX = Pattern.compile("(^|_)o[0-9a-f]*[0-9]");
+
+	/*
+	 * A path from a widget to another one: a number of steps up to an ancestor, and then
+	 * down, by child index (or -1 for the implementation of a composite widget).
+	 */
+	static class Target {
+		private int up;
+		private int[] down;
+		private Class<?> type;
+
+		private Target(int up, int[] down, Class<?> type) {
+			this.up = up;
+			this.down = down;
+			this.type = type;
+		}
+
+		static Target locate(WWidget sender, String id) {
+			int up = 0;
+			for (WWidget w = sender; w != null; w = w.getParent(), ++up) {
+				WWidget found = w.findById(id);
+				if (found != null) {
+					List<Integer> down = new ArrayList<Integer>();
+					while (!w.getId().equals(id)) {
+						if (w instanceof WCompositeWidget) {
+							w = ((WCompositeWidget) w).getImplementation();
+							down.add(-1);
+						} else {
+							List<WWidget> children = w.getWebWidget().getChildren();
+							int i = 0;
+							while (children.get(i).findById(id) == null)
+								++i;
+							w = children.get(i);
+							down.add(i);
+						}
+					}
+
+					int[] result = new int[down.size()];
+					for (int i = 0; i < result.length; ++i)
+						result[i] = down.get(i);
+					return new Target(up, result, found.getClass());
+				}
+			}
+
+			return null;
+		}
+
+		boolean matches(Target other) {
+			return up == other.up && Arrays.equals(down, other.down) && type == other.type;
+		}
+
+		String resolve(WWidget sender) {
+			WWidget w = sender;
+			for (int i = 0; i < up && w != null; ++i)
+				w = w.getParent();
+
+			for (int i = 0; i < down.length && w != null; ++i) {
+				if (down[i] == -1) {
+					w = w instanceof WCompositeWidget ? ((WCompositeWidget) w).getImplementation() : null;
+				} else {
+					List<WWidget> children = w.getWebWidget().getChildren();
+					w = down[i] < children.size() ? children.get(down[i]) : null;
+				}
+			}
+
+			return w != null && w.getClass() == type ? w.getId() : null;
+		}
+	}
+
+	static class Template {
+		private String[] parts;
+		private int[] params;
+		private Target[] targets;
+		private volatile boolean confirmed;
+
+		static Template create(WWidget sender, String js) {
+			List<String> parts = new ArrayList<String>();
+			List<Integer> params = new ArrayList<Integer>();
+			List<Target> targets = new ArrayList<Target>();
+			Map<String, Integer> targetIndex = new HashMap<String, Integer>();
+
+			Matcher m = TOKEN.matcher(js);
+			int last = 0;
+			while (m.find()) {
+				String token = m.group();
+				if (!OBJECT_ID.matcher(token).matches() && !OBJECT_ID_PREFIX.matcher(token).find())
+					continue;
+
+				Integer index = targetIndex.get(token);
+				if (index == null) {
+					Target target = Target.locate(sender, token);
+					if (target == null)
+						return null;
+
+					index = targets.size();
+					targets.add(target);
+					targetIndex.put(token, index);
+				}
+
+				parts.add(js.substring(last, m.start()));
+				params.add(index);
+				last = m.end();
+			}
+			parts.add(js.substring(last));
+
+			Template result = new Template();
+			result.parts = parts.toArray(new String[parts.size()]);
+			result.params = new int[params.size()];
+			for (int i = 0; i < result.params.length; ++i)
+				result.params[i] = params.get(i);
+			result.targets = targets.toArray(new Target[targets.size()]);
+			return result;
+		}
+
+		/*
+		 * Returns whether another template has the same text and targets.
+		 */
+		boolean matches(Template other) {
+			if (!Arrays.equals(parts, other.parts) || !Arrays.equals(params, other.params)
+					|| targets.length != other.targets.length)
+				return false;
+
+			for (int i = 0; i < targets.length; ++i)
+				if (!targets[i].matches(other.targets[i]))
+					return false;
+
+			return true;
+		}
+
+		String instantiate(WWidget sender) {
+			String[] ids = new String[targets.length];
+			for (int i = 0; i < targets.length; ++i) {
+				ids[i] = targets[i].resolve(sender);
+				if (ids[i] == null)
+					return null;
+			}
+
+			StringBuilder result = new StringBuilder();
+			for (int i = 0; i < params.length; ++i)
+				result.append(parts[i]).append(ids[params[i]]);
+			result.append(parts[params.length]);
+
+			return result.toString();
+		}
+	}
+
+	private static final Template UNCACHEABLE = new Template();
+	private static Map<String, Template> templates = new ConcurrentHashMap<String, Template>();
+	private static Map<Class<?>, Boolean> stateless = new ConcurrentHashMap<Class<?>, Boolean>();
+
+	/*
+	 * Returns the key for the JavaScript of a listener, or null if the listener holds
+	 * instance state, and its JavaScript cannot be shared.
+	 */
+	static String getKey(AbstractEventSignal signal, AbstractEventSignal.LearningListener slot) {
+		if (!isStateless(slot.getClass()))
+			return null;
+
+		return slot.getClass().getName() + ' ' + signal.getSender().getClass().getName() + ' ' + signal.getName();
+	}
+
+	/*
+	 * Returns whether a listener class has no instance fields (up to the JWt listener
+	 * base classes), except for the synthetic reference to its enclosing instance.
+	 * Captured variables of an anonymous class are synthetic fields as well, named
+	 * val$name, and do count as state.
+	 */
+	private static boolean isStateless(Class<?> listenerClass) {
+		Boolean result = stateless.get(listenerClass);
+
+		if (result == null) {
+			result = true;
+			for (Class<?> c = listenerClass; result && c != null && c.getEnclosingClass() != AbstractEventSignal.class; c = c
+					.getSuperclass()) {
+				for (Field f : c.getDeclaredFields()) {
+					if (Modifier.isStatic(f.getModifiers()))
+						continue;
+					if (f.isSynthetic() && f.getName().startsWith("this$"))
+						continue;
+					result = false;
+					break;
+				}
+			}
+
+			stateless.put(listenerClass, result);
+		}
+
+		return result;
+	}
+
+	/*
+	 * Returns the learned JavaScript for a widget, or null if it needs to be learned.
+	 */
+	static String lookup(String key, WWidget sender) {
+		Template t = templates.get(key);
+		if (t == null || !t.confirmed)
+			return null;
+
+		return t.instantiate(sender);
+	}
+
+	/*
+	 * Keeps the JavaScript that was learned for a widget. The first template that is
+	 * learned for a key is confirmed by the next one.
+	 */
+	static void learned(String key, WWidget sender, String js) {
+		Template existing = templates.get(key);
+		if (existing == UNCACHEABLE || (existing != null && existing.confirmed))
+			return;
+
+		Template t = Template.create(sender, js);
+		if (t == null)
+			templates.put(key, UNCACHEABLE);
+		else if (existing == null)
+			templates.putIfAbsent(key, t);
+		else if (existing.matches(t))
+			existing.confirmed = true;
+		else
+			templates.replace(key, existing, UNCACHEABLE);
+	}
+}
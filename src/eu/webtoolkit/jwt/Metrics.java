@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.webtoolkit.jwt.servlet.WebRequest;
+import eu.webtoolkit.jwt.servlet.WebResponse;
+
+/**
+ * Runtime metrics of a {@link WtServlet}.
+ * <p>
+ * This keeps track of the sessions, of the requests by type of response, of the time
+ * spent in event handling and rendering, and of the updates that are waiting to be
+ * written to slow clients. Counters are updated without contention between request
+ * threads.
+ * <p>
+ * The metrics are registered as a JMX MBean (named
+ * <code>eu.webtoolkit.jwt:type=Metrics,name="&lt;context path&gt;/&lt;servlet name&gt;"</code>) when the servlet
+ * is initialized, and can be forwarded to another monitoring system using a
+ * {@link MetricsListener}.
+ *
+ * @see WtServlet#getMetrics()
+ */
+public class Metrics implements MetricsMBean {
+	private static Logger logger = LoggerFactory.getLogger(Metrics.class);
+
+	/*
+	 * An exponentially weighted moving average of a rate, over one minute, updated
+	 * every five seconds.
+	 */
+	private static class Rate {
+		private static final long INTERVAL = 5000000000L;
+		private static final double ALPHA = 1 - Math.exp(-5 / 60.0);
+
+		private StripedCounter uncounted = new StripedCounter();
+		private volatile long lastTick = System.nanoTime();
+		private double rate = -1;
+
+		void mark() {
+			uncounted.increment();
+			tickIfNeeded();
+		}
+
+		double getRate() {
+			tickIfNeeded();
+			synchronized (this) {
+				return Math.max(rate, 0);
+			}
+		}
+
+		private void tickIfNeeded() {
+			if (System.nanoTime() - lastTick < INTERVAL)
+				return;
+
+			synchronized (this) {
+				long ticks = (System.nanoTime() - lastTick) / INTERVAL;
+				if (ticks == 0)
+					return;
+
+				lastTick += ticks * INTERVAL;
+				for (long i = 0; i < ticks; ++i) {
+					double instantRate = (i == 0 ? uncounted.sumThenReset() : 0) / (INTERVAL / 1E9);
+					if (rate < 0)
+						rate = instantRate;
+					else
+						rate += ALPHA * (instantRate - rate);
+				}
+			}
+		}
+	}
+
+	private WtServlet servlet;
+	private ObjectName objectName;
+	private List<MetricsListener> listeners = new CopyOnWriteArrayList<MetricsListener>();
+
+	private Map<EntryPointType, StripedCounter> createdSessions = new EnumMap<EntryPointType, StripedCounter>(EntryPointType.class);
+	private Map<WebRequest.ResponseType, StripedCounter> requests = new EnumMap<WebRequest.ResponseType, StripedCounter>(WebRequest.ResponseType.class);
+	private Map<WebRequest.ResponseType, Rate> requestRates = new EnumMap<WebRequest.ResponseType, Rate>(WebRequest.ResponseType.class);
+	private LatencyHistogram eventDispatch = new LatencyHistogram();
+	private LatencyHistogram render = new LatencyHistogram();
+	private StripedCounter pendingPushResponses = new StripedCounter();
+	private StripedCounter pendingPushBytes = new StripedCounter();
+	private StripedCounter coalescedUpdates = new StripedCounter();
+
+	Metrics(WtServlet servlet) {
+		this.servlet = servlet;
+
+		for (EntryPointType type : EntryPointType.values())
+			createdSessions.put(type, new StripedCounter());
+
+		for (WebRequest.ResponseType type : WebRequest.ResponseType.values()) {
+			requests.put(type, new StripedCounter());
+			requestRates.put(type, new Rate());
+		}
+	}
+
+	/**
+	 * Adds a listener.
+	 * <p>
+	 * The listener is notified of every measurement.
+	 */
+	public void addListener(MetricsListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener.
+	 *
+	 * @see #addListener(MetricsListener)
+	 */
+	public void removeListener(MetricsListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Returns the durations of event handling.
+	 */
+	public LatencyHistogram getEventDispatchLatency() {
+		return eventDispatch;
+	}
+
+	/**
+	 * Returns the durations of rendering responses.
+	 */
+	public LatencyHistogram getRenderLatency() {
+		return render;
+	}
+
+	void sessionCreated(EntryPointType type) {
+		createdSessions.get(type).increment();
+		for (MetricsListener l : listeners)
+			l.sessionCreated(type);
+	}
+
+	void sessionDestroyed() {
+		for (MetricsListener l : listeners)
+			l.sessionDestroyed();
+	}
+
+	void requestHandled(WebRequest.ResponseType type, long nanos) {
+		if (type != null) {
+			requests.get(type).increment();
+			requestRates.get(type).mark();
+		}
+		for (MetricsListener l : listeners)
+			l.requestHandled(type, nanos);
+	}
+
+	void eventDispatched(long nanos) {
+		eventDispatch.record(nanos);
+		for (MetricsListener l : listeners)
+			l.eventDispatched(nanos);
+	}
+
+	void rendered(WebRequest.ResponseType type, long nanos) {
+		render.record(nanos);
+		for (MetricsListener l : listeners)
+			l.rendered(type, nanos);
+	}
+
+	void pushQueued(long bytes) {
+		pendingPushResponses.increment();
+		pendingPushBytes.add(bytes);
+	}
+
+	void pushWritten(long bytes) {
+		pendingPushResponses.add(-1);
+		pendingPushBytes.add(-bytes);
+	}
+
+	void updateCoalesced() {
+		coalescedUpdates.increment();
+	}
+
+	void register(String contextPath, String servletName) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("eu.webtoolkit.jwt:type=Metrics,name="
+					+ ObjectName.quote(contextPath + "/" + servletName));
+			if (server.isRegistered(name))
+				server.unregisterMBean(name);
+			server.registerMBean(this, name);
+			objectName = name;
+		} catch (Exception e) {
+			logger.warn("Could not register metrics MBean: " + e.getMessage());
+		}
+	}
+
+	void unregister() {
+		if (objectName == null)
+			return;
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (Exception e) {
+			logger.warn("Could not unregister metrics MBean: " + e.getMessage());
+		}
+		objectName = null;
+	}
+
+	public int getLiveSessions() {
+		return servlet.getSessionCount();
+	}
+
+	public int getLiveAjaxSessions() {
+		return servlet.getAjaxSessionCount();
+	}
+
+	public long getCreatedSessions() {
+		long result = 0;
+		for (StripedCounter c : createdSessions.values())
+			result += c.sum();
+		return result;
+	}
+
+	public long getCreatedApplicationSessions() {
+		return createdSessions.get(EntryPointType.Application).sum();
+	}
+
+	public long getCreatedWidgetSetSessions() {
+		return createdSessions.get(EntryPointType.WidgetSet).sum();
+	}
+
+	public long getPageRequests() {
+		return requests.get(WebRequest.ResponseType.Page).sum();
+	}
+
+	public long getScriptRequests() {
+		return requests.get(WebRequest.ResponseType.Script).sum();
+	}
+
+	public long getUpdateRequests() {
+		return requests.get(WebRequest.ResponseType.Update).sum();
+	}
+
+	public double getPageRequestRate() {
+		return requestRates.get(WebRequest.ResponseType.Page).getRate();
+	}
+
+	public double getScriptRequestRate() {
+		return requestRates.get(WebRequest.ResponseType.Script).getRate();
+	}
+
+	public double getUpdateRequestRate() {
+		return requestRates.get(WebRequest.ResponseType.Update).getRate();
+	}
+
+	public long getEventDispatchCount() {
+		return eventDispatch.getCount();
+	}
+
+	public double getEventDispatchMean() {
+		return eventDispatch.getMean();
+	}
+
+	public double getEventDispatch99thPercentile() {
+		return eventDispatch.getPercentile(99);
+	}
+
+	public double getEventDispatchMax() {
+		return eventDispatch.getMax();
+	}
+
+	public long getRenderCount() {
+		return render.getCount();
+	}
+
+	public double getRenderMean() {
+		return render.getMean();
+	}
+
+	public double getRender99thPercentile() {
+		return render.getPercentile(99);
+	}
+
+	public double getRenderMax() {
+		return render.getMax();
+	}
+
+	public long getPendingPushResponses() {
+		return pendingPushResponses.sum();
+	}
+
+	public long getPendingPushBytes() {
+		return pendingPushBytes.sum();
+	}
+
+	public long getCoalescedUpdates() {
+		return coalescedUpdates.sum();
+	}
+
+	public int getRequestsInFlight() {
+		return servlet.getRequestsInFlight();
+	}
+
+	public int getRequestQueueDepth() {
+		return servlet.getRequestQueueDepth();
+	}
+
+	public long getRejectedRequests() {
+		return servlet.getRejectedRequests() + servlet.getRequestsRejected();
+	}
+
+	public long getRejectedSessions() {
+		return servlet.getRejectedSessions();
+	}
+
+	public long getCompressedResponses() {
+		return WebResponse.getCompressedResponseCount();
+	}
+
+	public long getCompressionBytesSaved() {
+		return WebResponse.getCompressionBytesSaved();
+	}
+
+	public long getBootWaitCount() {
+		return WtServlet.getBootWaitCount();
+	}
+}
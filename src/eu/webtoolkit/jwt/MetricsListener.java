@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import eu.webtoolkit.jwt.servlet.WebRequest;
+
+/**
+ * A listener for the measurements taken by {@link Metrics}.
+ * <p>
+ * A listener may forward the measurements to a monitoring system. The methods are
+ * called from the thread that handles the request, often while holding the session
+ * lock, and should thus return quickly.
+ *
+ * @see Metrics#addListener(MetricsListener)
+ */
+public interface MetricsListener {
+	/**
+	 * A session was created.
+	 *
+	 * @param type the type of the session.
+	 */
+	public void sessionCreated(EntryPointType type);
+
+	/**
+	 * A session was destroyed.
+	 */
+	public void sessionDestroyed();
+
+	/**
+	 * A request was handled by its session.
+	 *
+	 * @param type the type of the response, or <code>null</code> for a request to a resource.
+	 * @param nanos the time spent handling the request, in nanoseconds.
+	 */
+	public void requestHandled(WebRequest.ResponseType type, long nanos);
+
+	/**
+	 * An event was dispatched, i.e. the application's event handlers were run.
+	 *
+	 * @param nanos the time spent in the event handlers, in nanoseconds.
+	 */
+	public void eventDispatched(long nanos);
+
+	/**
+	 * A response was rendered.
+	 *
+	 * @param type the type of the response.
+	 * @param nanos the time spent rendering, in nanoseconds.
+	 */
+	public void rendered(WebRequest.ResponseType type, long nanos);
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+/**
+ * The management interface of {@link Metrics}.
+ * <p>
+ * Durations are in milliseconds, rates in requests per second (averaged over the last
+ * minute).
+ */
+public interface MetricsMBean {
+	public int getLiveSessions();
+
+	public int getLiveAjaxSessions();
+
+	public long getCreatedSessions();
+
+	public long getCreatedApplicationSessions();
+
+	public long getCreatedWidgetSetSessions();
+
+	public long getPageRequests();
+
+	public long getScriptRequests();
+
+	public long getUpdateRequests();
+
+	public double getPageRequestRate();
+
+	public double getScriptRequestRate();
+
+	public double getUpdateRequestRate();
+
+	public long getEventDispatchCount();
+
+	public double getEventDispatchMean();
+
+	public double getEventDispatch99thPercentile();
+
+	public double getEventDispatchMax();
+
+	public long getRenderCount();
+
+	public double getRenderMean();
+
+	public double getRender99thPercentile();
+
+	public double getRenderMax();
+
+	public long getPendingPushResponses();
+
+	public long getPendingPushBytes();
+
+	public long getCoalescedUpdates();
+
+	public int getRequestsInFlight();
+
+	public int getRequestQueueDepth();
+
+	public long getRejectedRequests();
+
+	public long getRejectedSessions();
+
+	public long getCompressedResponses();
+
+	public long getCompressionBytesSaved();
+
+	public long getBootWaitCount();
+}
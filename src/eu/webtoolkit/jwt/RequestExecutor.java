@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Runs the (asynchronous) processing of requests on an executor other than the
+ * servlet container's pool, and keeps track of how long requests wait for a thread.
+ *
+ * The executor is either provided by the application (Configuration#setRequestExecutor()),
+ * starts a virtual thread per request (on runtimes that support them), or is a bounded
+ * pool of platform threads with a bounded queue.
+ */
+class RequestExecutor {
+	private static Logger logger = LoggerFactory.getLogger(RequestExecutor.class);
+
+	private Executor executor;
+	private boolean owned;
+	private AtomicInteger queued = new AtomicInteger();
+	private AtomicLong executed = new AtomicLong();
+	private AtomicLong rejected = new AtomicLong();
+	private AtomicLong waitTime = new AtomicLong();
+
+	private RequestExecutor(Executor executor, boolean owned) {
+		this.executor = executor;
+		this.owned = owned;
+	}
+
+	/*
+	 * Creates the executor for a configuration, or returns null when requests should be
+	 * processed on the servlet container's pool.
+	 */
+	static RequestExecutor create(Configuration configuration) {
+		if (configuration.getRequestExecutor() != null)
+			return new RequestExecutor(configuration.getRequestExecutor(), false);
+
+		if (configuration.useVirtualThreads()) {
+			Executor virtualThreads = createVirtualThreadExecutor();
+			if (virtualThreads != null) {
+				logger.info("Processing requests using virtual threads");
+				return new RequestExecutor(virtualThreads, true);
+			}
+			logger.warn("Virtual threads are not supported by this runtime");
+		}
+
+		int threads = configuration.getRequestThreads();
+		if (threads <= 0)
+			return null;
+
+		int queueSize = configuration.getRequestQueueSize();
+		BlockingQueue<Runnable> queue;
+		if (queueSize > 0)
+			queue = new ArrayBlockingQueue<Runnable>(queueSize);
+		else
+			queue = new LinkedBlockingQueue<Runnable>();
+
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+				new NamedThreadFactory("jwt-request"));
+		pool.allowCoreThreadTimeOut(true);
+
+		logger.info("Processing requests using " + threads + " threads");
+		return new RequestExecutor(pool, true);
+	}
+
+	/*
+	 * Executors.newVirtualThreadPerTaskExecutor() is only available from Java 21 on.
+	 */
+	private static Executor createVirtualThreadExecutor() {
+		try {
+			return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/*
+	 * Runs a task, or throws a RejectedExecutionException when the queue is full.
+	 */
+	void execute(final Runnable task) {
+		final long submitted = System.nanoTime();
+		queued.incrementAndGet();
+
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					queued.decrementAndGet();
+					waitTime.addAndGet(System.nanoTime() - submitted);
+					executed.incrementAndGet();
+					task.run();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			queued.decrementAndGet();
+			rejected.incrementAndGet();
+			throw e;
+		}
+	}
+
+	void shutdown() {
+		if (owned && executor instanceof ExecutorService)
+			((ExecutorService) executor).shutdown();
+	}
+
+	int getQueueDepth() {
+		return queued.get();
+	}
+
+	long getExecutedCount() {
+		return executed.get();
+	}
+
+	long getRejectedCount() {
+		return rejected.get();
+	}
+
+	long getWaitTime() {
+		return waitTime.get();
+	}
+
+	static class NamedThreadFactory implements ThreadFactory {
+		private static AtomicInteger poolCount = new AtomicInteger();
+
+		private String prefix;
+		private AtomicInteger threadCount = new AtomicInteger();
+
+		NamedThreadFactory(String name) {
+			this.prefix = name + "-" + poolCount.incrementAndGet() + "-";
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread result = new Thread(r, prefix + threadCount.incrementAndGet());
+			result.setDaemon(true);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+/**
+ * An interface for tracing the phases of request handling.
+ * <p>
+ * A tracer receives an event when JWt starts and ends each phase of handling a request,
+ * which allows to attribute the time spent on a request to e.g. the parsing of the
+ * request, the application's event handlers, or the rendering of the widget tree. This
+ * may be used to feed a (distributed) tracing system.
+ * <p>
+ * The methods are called from the thread that handles the request, mostly while holding
+ * the session lock, and should thus return quickly. When no tracer is configured, the
+ * phases are not timed at all.
+ *
+ * @see Configuration#setRequestTracer(RequestTracer)
+ */
+public interface RequestTracer {
+	/**
+	 * A phase of request handling.
+	 */
+	public enum Phase {
+		/**
+		 * Parsing the request parameters and uploaded files.
+		 * <p>
+		 * The size is the request's content length.
+		 */
+		Parse,
+		/**
+		 * Validating an event request (the ackId and the session's security checks).
+		 */
+		Validate,
+		/**
+		 * Dispatching an event to the application's event handlers.
+		 */
+		Dispatch,
+		/**
+		 * Computing the changes of the widget tree.
+		 * <p>
+		 * The size is the number of changed DOM elements.
+		 */
+		CollectChanges,
+		/**
+		 * Generating the JavaScript for an update (including
+		 * {@link Phase#CollectChanges CollectChanges}).
+		 * <p>
+		 * The size is the number of characters generated.
+		 */
+		CollectJavaScript,
+		/**
+		 * Writing a rendered update to the response (which includes the character encoding
+		 * and compression).
+		 * <p>
+		 * The size is the number of characters written.
+		 */
+		Serialize,
+		/**
+		 * Flushing a response to the client.
+		 * <p>
+		 * The size is the number of bytes, if known.
+		 */
+		Flush
+	}
+
+	/**
+	 * Signals the start of a phase.
+	 *
+	 * @param phase the phase.
+	 * @param sessionId the session ID, or <code>null</code> if not known (yet).
+	 * @param signal the signal that is being handled, or <code>null</code>.
+	 */
+	public void phaseStarted(Phase phase, String sessionId, String signal);
+
+	/**
+	 * Signals the end of a phase.
+	 *
+	 * @param phase the phase.
+	 * @param sessionId the session ID, or <code>null</code> if not known (yet).
+	 * @param signal the signal that is being handled, or <code>null</code>.
+	 * @param nanos the duration of the phase, in nanoseconds.
+	 * @param size the size of the payload (see {@link Phase}), or -1 if not applicable.
+	 */
+	public void phaseEnded(Phase phase, String sessionId, String signal, long nanos, long size);
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import eu.webtoolkit.jwt.utils.HttpUtils;
+import eu.webtoolkit.jwt.utils.StreamUtils;
+
+/*
+ * JVM-wide cache of the rendered script skeleton (jQuery + Wt.js).
+ *
+ * When the script is split (see Configuration#splitScript()), the skeleton is
+ * rendered without session specific variables, and can be shared by all sessions
+ * that render it with the same conditions and variables. Each entry holds the
+ * UTF-8 encoded script, its gzip-compressed variant and a strong ETag.
+ *
+ * A cached skeleton is loaded by the bootstrap script from a session-independent,
+ * content-versioned URL, so that a browser downloads it once for all sessions. It is
+ * served before any session is looked up (see WtServlet).
+ */
+class ScriptSkeletonCache {
+	static class Entry {
+		private byte[] data;
+		private byte[] gzipData;
+		private String eTag;
+		private String version;
+		private boolean shared;
+
+		Entry(String contents) {
+			try {
+				this.data = contents.getBytes("UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				throw new RuntimeException(e);
+			}
+			this.gzipData = StreamUtils.gzip(data);
+			this.eTag = HttpUtils.computeETag(data);
+			this.version = eTag.substring(1, eTag.length() - 1);
+		}
+
+		byte[] getData() {
+			return data;
+		}
+
+		byte[] getGzipData() {
+			return gzipData;
+		}
+
+		String getETag() {
+			return eTag;
+		}
+
+		/*
+		 * Returns the (relative) session-independent URL of the skeleton, or null if it
+		 * is not cached and needs to be loaded within the session.
+		 */
+		String getUrl(WebSession session) {
+			if (!shared)
+				return null;
+
+			return session.getDeploymentPath() + "?" + REQUEST + "&v=" + version;
+		}
+	}
+
+	/*
+	 * Only a handful of condition/variable combinations exist in practice; this bounds
+	 * the cache in case a variable unexpectedly varies per session.
+	 */
+	private static final int MAX_ENTRIES = 32;
+	private static final String REQUEST = "request=skeleton";
+
+	private static ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private static ConcurrentMap<String, Entry> versions = new ConcurrentHashMap<String, Entry>();
+
+	static Entry get(String key) {
+		return entries.get(key);
+	}
+
+	static Entry put(String key, String contents) {
+		Entry entry = new Entry(contents);
+
+		if (entries.size() >= MAX_ENTRIES)
+			return entry;
+
+		Entry existing = entries.putIfAbsent(key, entry);
+		if (existing != null)
+			return existing;
+
+		entry.shared = true;
+		versions.put(entry.version, entry);
+		return entry;
+	}
+
+	static boolean isRequest(HttpServletRequest request) {
+		String query = request.getQueryString();
+		return "GET".equals(request.getMethod()) && query != null && query.startsWith(REQUEST);
+	}
+
+	/*
+	 * Serves a skeleton by its version. Since the version is the digest of its contents,
+	 * it may be cached indefinitely.
+	 */
+	static void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String version = request.getParameter("v");
+		Entry entry = version != null ? versions.get(version) : null;
+
+		if (entry == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		response.setContentType("text/javascript; charset=UTF-8");
+		response.setHeader("ETag", entry.eTag);
+		response.setHeader("Vary", "Accept-Encoding");
+		response.setHeader("Cache-Control", "max-age=31536000,public");
+
+		if (HttpUtils.isNotModified(request, entry.eTag, -1)) {
+			response.setStatus(304);
+			return;
+		}
+
+		byte[] data;
+		if (HttpUtils.acceptsGzip(request)) {
+			response.setHeader("Content-Encoding", "gzip");
+			data = entry.gzipData;
+		} else
+			data = entry.data;
+
+		response.setContentLength(data.length);
+		response.getOutputStream().write(data);
+	}
+}
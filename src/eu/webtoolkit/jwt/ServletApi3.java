@@ -11,6 +11,7 @@ import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.servlet.AsyncContext;
 import javax.servlet.DispatcherType;
@@ -88,12 +89,27 @@ class ServletApi3 extends ServletApi{
 			request.startAsync();
 			
 			request.getAsyncContext().setTimeout(90000);
-			request.getAsyncContext().start(new Runnable() {
+			Runnable task = new Runnable() {
 				@Override
 				public void run() {
 					handleRequest(servlet, request, response);
 				}
-			});
+			};
+
+			RequestExecutor executor = servlet.getRequestExecutor();
+			if (executor != null) {
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException e) {
+					logger.warn("Request queue is full, refusing request");
+					response.setStatus(503);
+					response.setHeader("Retry-After", "1");
+					servlet.requestRefused();
+					request.discardUploadChunk();
+					completeAsyncContext(request);
+				}
+			} else
+				request.getAsyncContext().start(task);
 		} else
 			handleRequest(servlet, request, response);
 	}
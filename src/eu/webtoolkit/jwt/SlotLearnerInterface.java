@@ -22,4 +22,7 @@ import org.slf4j.LoggerFactory;
 interface SlotLearnerInterface {
 	public String learn(AbstractEventSignal.LearningListener slot)
 			throws IOException;
+
+	public String learn(AbstractEventSignal signal,
+			AbstractEventSignal.LearningListener slot) throws IOException;
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.webtoolkit.jwt.servlet.WebRequest;
+import eu.webtoolkit.jwt.utils.HttpUtils;
+import eu.webtoolkit.jwt.utils.StreamUtils;
+
+/*
+ * An in-memory cache for the static files that JWt serves from its jar (wt-resources/).
+ *
+ * Each file is read only once from the class path, and kept together with a gzip
+ * variant (for text types), a strong ETag and its modification time. Entries are
+ * evicted in least-recently-used order when the total size exceeds the configured
+ * bound.
+ */
+class StaticResourceCache {
+	private static Logger logger = LoggerFactory.getLogger(StaticResourceCache.class);
+
+	static class Entry {
+		private String mimeType;
+		private byte[] data;
+		private byte[] gzipData;
+		private String eTag;
+		private long lastModified;
+
+		Entry(String mimeType, byte[] data, long lastModified) {
+			this.mimeType = mimeType;
+			this.data = data;
+			this.lastModified = lastModified;
+			this.eTag = HttpUtils.computeETag(data);
+
+			if (HttpUtils.isCompressibleMimeType(mimeType)) {
+				byte[] gzipped = StreamUtils.gzip(data);
+				if (gzipped.length < data.length)
+					this.gzipData = gzipped;
+			}
+		}
+
+		long getSize() {
+			return data.length + (gzipData != null ? gzipData.length : 0);
+		}
+	}
+
+	private static final int CACHE_LIFETIME = 2592000;
+
+	private long maxSize;
+	private long size;
+	private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	StaticResourceCache(long maxSize) {
+		this.maxSize = maxSize;
+		this.size = 0;
+	}
+
+	/*
+	 * Returns the cached entry for a file, loading it from the class path when needed.
+	 *
+	 * Returns null if the file does not exist.
+	 */
+	Entry get(String fileName, String mimeType) throws IOException {
+		synchronized (this) {
+			Entry result = entries.get(fileName);
+			if (result != null)
+				return result;
+		}
+
+		URL url = StaticResourceCache.class.getResource("/eu/webtoolkit/jwt/" + fileName);
+		if (url == null)
+			return null;
+
+		URLConnection connection = url.openConnection();
+		long lastModified = connection.getLastModified();
+		if (lastModified <= 0)
+			lastModified = System.currentTimeMillis();
+
+		InputStream s = connection.getInputStream();
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		try {
+			StreamUtils.copy(s, data);
+		} finally {
+			StreamUtils.closeQuietly(s);
+		}
+
+		Entry result = new Entry(mimeType, data.toByteArray(), lastModified);
+
+		synchronized (this) {
+			if (result.getSize() <= maxSize) {
+				Entry previous = entries.put(fileName, result);
+				if (previous != null)
+					size -= previous.getSize();
+				size += result.getSize();
+
+				for (Iterator<Map.Entry<String, Entry>> i = entries.entrySet().iterator(); size > maxSize && i.hasNext();) {
+					Entry evicted = i.next().getValue();
+					size -= evicted.getSize();
+					i.remove();
+				}
+			} else
+				logger.debug("not caching static file: " + fileName + " (" + data.size() + " bytes)");
+		}
+
+		return result;
+	}
+
+	void serve(Entry entry, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		response.setContentType(entry.mimeType);
+		response.setHeader("Cache-Control", "max-age=" + CACHE_LIFETIME + ",public");
+		response.setHeader("ETag", entry.eTag);
+		response.setDateHeader("Last-Modified", entry.lastModified);
+		response.setHeader("Accept-Ranges", "bytes");
+		if (entry.gzipData != null)
+			response.setHeader("Vary", "Accept-Encoding");
+
+		if (HttpUtils.isNotModified(request, entry.eTag, entry.lastModified)) {
+			response.setStatus(304);
+			return;
+		}
+
+		WebRequest.ByteRangeSpecifier ranges = WebRequest.getRanges(request.getHeader("Range"), entry.data.length);
+		if (!ranges.isSatisfiable()) {
+			response.setStatus(416);
+			response.setHeader("Content-Range", "bytes */" + entry.data.length);
+			return;
+		}
+
+		if (ranges.size() == 1) {
+			WebRequest.ByteRange range = ranges.get(0);
+			response.setStatus(206);
+			response.setHeader("Content-Range", "bytes " + range.getFirstByte() + "-" + range.getLastByte() + "/" + entry.data.length);
+			response.setContentLength((int) range.getLength());
+			response.getOutputStream().write(entry.data, (int) range.getFirstByte(), (int) range.getLength());
+		} else {
+			byte[] data = entry.data;
+			if (entry.gzipData != null && HttpUtils.acceptsGzip(request)) {
+				response.setHeader("Content-Encoding", "gzip");
+				data = entry.gzipData;
+			}
+			response.setContentLength(data.length);
+			response.getOutputStream().write(data);
+		}
+
+		response.getOutputStream().flush();
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * An immutable lookup structure for the resources that are bound to a fixed path
+ * using WtServlet#addResource().
+ *
+ * Exact paths are resolved with a hash lookup. Paths that end with a '/' are prefix
+ * paths: they also match every path below them, and are resolved using a trie on path
+ * segments (the longest prefix wins).
+ *
+ * Paths that start with a '/' are absolute; other paths are relative to the
+ * servlet's script name.
+ */
+class StaticResourceRouter {
+	private static class Node {
+		private Map<String, Node> children;
+		private WResource resource;
+
+		Node getChild(String segment) {
+			return children != null ? children.get(segment) : null;
+		}
+
+		Node addChild(String segment) {
+			if (children == null)
+				children = new HashMap<String, Node>();
+
+			Node result = children.get(segment);
+			if (result == null) {
+				result = new Node();
+				children.put(segment, result);
+			}
+
+			return result;
+		}
+	}
+
+	private Map<String, WResource> absolutePaths = new HashMap<String, WResource>();
+	private Map<String, WResource> relativePaths = new HashMap<String, WResource>();
+	private Node absolutePrefixes = new Node();
+	private Node relativePrefixes = new Node();
+	private boolean empty;
+
+	StaticResourceRouter(List<WResource> resources) {
+		for (WResource resource : resources) {
+			String path = resource.getInternalPath();
+			boolean absolute = path.startsWith("/");
+
+			Map<String, WResource> paths = absolute ? absolutePaths : relativePaths;
+			if (!paths.containsKey(path))
+				paths.put(path, resource);
+
+			if (path.endsWith("/")) {
+				Node node = absolute ? absolutePrefixes : relativePrefixes;
+				for (String segment : path.substring(0, path.length() - 1).split("/", -1))
+					node = node.addChild(segment);
+				if (node.resource == null)
+					node.resource = resource;
+			}
+		}
+
+		empty = resources.isEmpty();
+	}
+
+	boolean hasPath(String path) {
+		return absolutePaths.containsKey(path) || relativePaths.containsKey(path);
+	}
+
+	WResource route(String scriptName, String pathInfo) {
+		if (empty)
+			return null;
+
+		String path = scriptName + pathInfo;
+
+		WResource result = absolutePaths.get(path);
+		if (result == null)
+			result = relativePaths.get(pathInfo);
+		if (result == null)
+			result = matchPrefix(absolutePrefixes, path);
+		if (result == null)
+			result = matchPrefix(relativePrefixes, pathInfo);
+
+		return result;
+	}
+
+	private static WResource matchPrefix(Node root, String path) {
+		if (root.children == null)
+			return null;
+
+		String[] segments = path.split("/", -1);
+
+		WResource result = null;
+		Node node = root;
+		for (int i = 0; i < segments.length - 1; ++i) {
+			node = node.getChild(segments[i]);
+			if (node == null)
+				break;
+			if (node.resource != null)
+				result = node.resource;
+		}
+
+		return result;
+	}
+}
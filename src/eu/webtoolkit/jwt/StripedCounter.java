@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * A counter which is updated from many threads without contention.
+ *
+ * Updates go to one of several cells, chosen by the updating thread, and the value is
+ * the sum of all cells. Cells are spaced apart so that they do not share a cache line.
+ */
+class StripedCounter {
+	private static final int STRIPES = 16;
+	private static final int SPACING = 8;
+
+	private AtomicLongArray cells = new AtomicLongArray(STRIPES * SPACING);
+
+	void add(long x) {
+		int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+		cells.addAndGet(stripe * SPACING, x);
+	}
+
+	void increment() {
+		add(1);
+	}
+
+	long sum() {
+		long result = 0;
+		for (int i = 0; i < STRIPES; ++i)
+			result += cells.get(i * SPACING);
+		return result;
+	}
+
+	/*
+	 * Returns the sum, and resets the counter. Concurrent updates are not lost:
+	 * they are included either in this sum or in the next one.
+	 */
+	long sumThenReset() {
+		long result = 0;
+		for (int i = 0; i < STRIPES; ++i)
+			result += cells.getAndSet(i * SPACING, 0);
+		return result;
+	}
+}
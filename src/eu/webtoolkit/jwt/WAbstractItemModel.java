@@ -904,8 +904,10 @@ public abstract class WAbstractItemModel extends WObject {
 				}
 				if (!this.insertRows(row, selectionModel.getSelectedIndexes()
 						.size(), parent)) {
-					logger.error(new StringWriter().append(
-							"dropEvent(): could not insertRows()").toString());
+					if (logger.isErrorEnabled()) {
+						logger.error(new StringWriter().append(
+								"dropEvent(): could not insertRows()").toString());
+					}
 					return;
 				}
 			}
@@ -932,9 +934,11 @@ public abstract class WAbstractItemModel extends WObject {
 				while (!selectionModel.getSelectedIndexes().isEmpty()) {
 					WModelIndex i = selectionModel.getSelectedIndexes().last();
 					if (!sourceModel.removeRow(i.getRow(), i.getParent())) {
-						logger.error(new StringWriter().append(
-								"dropEvent(): could not removeRows()")
-								.toString());
+						if (logger.isErrorEnabled()) {
+							logger.error(new StringWriter().append(
+									"dropEvent(): could not removeRows()")
+									.toString());
+						}
 						return;
 					}
 				}
@@ -153,6 +153,7 @@ public class WApplication extends WObject {
 		this.internalPathInvalid_ = new Signal1<String>();
 		this.serverPush_ = 0;
 		this.serverPushChanged_ = true;
+		this.updateCoalescingInterval_ = 0;
 		this.javaScriptClass_ = "Wt";
 		this.dialogCover_ = null;
 		this.quited_ = false;
@@ -171,6 +172,18 @@ public class WApplication extends WObject {
 		this.layoutDirection_ = LayoutDirection.LeftToRight;
 		this.scriptLibraries_ = new ArrayList<WApplication.ScriptLibrary>();
 		this.scriptLibrariesAdded_ = 0;
+		this.preambleBundle_ = null;
+		if (this.session_.getController().getConfiguration()
+				.bundlePreambles()) {
+			JavaScriptPreambleBundle.Snapshot bundle = JavaScriptPreambleBundle
+					.getSnapshot();
+			if (!bundle.isEmpty()) {
+				this.preambleBundle_ = bundle;
+				this.scriptLibraries_.add(new WApplication.ScriptLibrary(
+						bundle.getUrl(this.session_), ""));
+				++this.scriptLibrariesAdded_;
+			}
+		}
 		this.theme_ = null;
 		this.styleSheets_ = new ArrayList<WCssStyleSheet>();
 		this.styleSheetsAdded_ = 0;
@@ -1690,6 +1703,49 @@ public class WApplication extends WObject {
 		return this.serverPush_ > 0;
 	}
 
+	/**
+	 * Sets the minimum interval between server-initiated updates.
+	 * <p>
+	 * By default (0), every {@link WApplication#triggerUpdate() triggerUpdate()}
+	 * pushes the pending changes right away. When an application is updated
+	 * very frequently (e.g. from a data feed), this results in many small
+	 * pushes, each of which completes a poll request that needs to be renewed
+	 * by the client.
+	 * <p>
+	 * When an interval is set, an update which is triggered within this
+	 * interval after the previous push is postponed until the interval has
+	 * passed, and merged with any other update triggered in the meantime into a
+	 * single push.
+	 * <p>
+	 * 
+	 * @param milliseconds the interval, in milliseconds, or 0.
+	 * 
+	 * @see WApplication#getCoalescedUpdateCount()
+	 */
+	public void setUpdateCoalescingInterval(int milliseconds) {
+		this.updateCoalescingInterval_ = milliseconds;
+	}
+
+	/**
+	 * Returns the minimum interval between server-initiated updates.
+	 * <p>
+	 * 
+	 * @see WApplication#setUpdateCoalescingInterval(int milliseconds)
+	 */
+	public int getUpdateCoalescingInterval() {
+		return this.updateCoalescingInterval_;
+	}
+
+	/**
+	 * Returns the number of updates which were merged into a later push.
+	 * <p>
+	 * 
+	 * @see WApplication#setUpdateCoalescingInterval(int milliseconds)
+	 */
+	public long getCoalescedUpdateCount() {
+		return this.session_.getCoalescedUpdateCount();
+	}
+
 	/**
 	 * Propagates server-initiated updates.
 	 * <p>
@@ -2955,6 +3011,7 @@ public class WApplication extends WObject {
 	boolean internalPathValid_;
 	private int serverPush_;
 	boolean serverPushChanged_;
+	private int updateCoalescingInterval_;
 	private String javaScriptClass_;
 	private WApplication.AjaxMethod ajaxMethod_;
 	private WContainerWidget dialogCover_;
@@ -2990,6 +3047,7 @@ public class WApplication extends WObject {
 	String autoJavaScript_;
 	boolean autoJavaScriptChanged_;
 	private List<WJavaScriptPreamble> javaScriptPreamble_;
+	private JavaScriptPreambleBundle.Snapshot preambleBundle_;
 	private int newJavaScriptPreamble_;
 	private Set<String> javaScriptLoaded_;
 	private boolean customJQuery_;
@@ -3159,6 +3217,24 @@ public class WApplication extends WObject {
 			String scope = preamble.scope == JavaScriptScope.ApplicationScope ? this
 					.getJavaScriptClass()
 					: "Wt3_3_0";
+			if (this.session_.getController().getConfiguration()
+					.bundlePreambles()) {
+				JavaScriptPreambleBundle.register(preamble);
+			}
+			if (this.preambleBundle_ != null
+					&& this.preambleBundle_.contains(preamble)) {
+				String ref = JavaScriptPreambleBundle.SYMBOL + "["
+						+ WWebWidget.jsStringLiteral(preamble.name) + "]";
+				if (preamble.type == JavaScriptObjectType.JavaScriptFunction) {
+					out.append(scope).append('.').append(preamble.name).append(
+							" = function() { return ").append(ref).append(
+							".apply(").append(scope).append(", arguments) };");
+				} else {
+					out.append(scope).append('.').append(preamble.name).append(
+							" = ").append(ref).append(";\n");
+				}
+				continue;
+			}
 			if (preamble.type == JavaScriptObjectType.JavaScriptFunction) {
 				out.append(scope).append('.').append(preamble.name).append(
 						" = function() { return (").append(preamble.src)
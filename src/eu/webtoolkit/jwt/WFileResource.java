@@ -5,13 +5,19 @@
  */
 package eu.webtoolkit.jwt;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 import eu.webtoolkit.jwt.servlet.WebRequest;
 import eu.webtoolkit.jwt.servlet.WebResponse;
+import eu.webtoolkit.jwt.utils.HttpUtils;
 import eu.webtoolkit.jwt.utils.StreamUtils;
 
 /**
@@ -97,24 +103,141 @@ public class WFileResource extends WResource {
 	private String mimeType_;
 	private String fileName_;
 
+	/*
+	 * A request for more ranges than this is served with the entire file.
+	 */
+	private static final int MAX_RANGES = 16;
+
+	/**
+	 * Streams the file.
+	 * <p>
+	 * The response carries a Last-Modified and ETag header (derived from the file's
+	 * modification time and size), and is a 304 (Not Modified) response when the
+	 * client's cached copy is still valid. Range requests are served with one or more
+	 * byte ranges (206 Partial Content), which allows e.g. {@link WVideo} and
+	 * {@link WAudio} to seek.
+	 * <p>
+	 * The file is transferred using {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+	 * which avoids copying it through the heap when the servlet container's output stream
+	 * is a channel.
+	 */
 	@Override
 	public void handleRequest(WebRequest request, WebResponse response) {
+		File f = new File(fileName_);
+		if (!f.isFile()) {
+			System.err.println("Could not find file: " + fileName_);
+			response.setStatus(404);
+			return;
+		}
+
+		long size = f.length();
+		long lastModified = f.lastModified();
+		String eTag = HttpUtils.computeETag(size, lastModified);
+
 		response.setContentType(mimeType_);
+		response.setHeader("ETag", eTag);
+		response.setDateHeader("Last-Modified", lastModified);
+		response.setHeader("Accept-Ranges", "bytes");
+
+		if (HttpUtils.isNotModified(request, eTag, lastModified)) {
+			response.setStatus(304);
+			return;
+		}
+
+		WebRequest.ByteRangeSpecifier ranges;
+		if (HttpUtils.isRangeApplicable(request, eTag, lastModified))
+			ranges = request.getRanges(size);
+		else
+			ranges = new WebRequest.ByteRangeSpecifier();
 
+		if (!ranges.isSatisfiable()) {
+			response.setStatus(416);
+			response.setHeader("Content-Range", "bytes */" + size);
+			return;
+		}
+
+		boolean head = "HEAD".equals(request.getMethod());
+
+		FileInputStream fis = null;
 		try {
-			File f = new File(fileName_);
-			FileInputStream fis = new FileInputStream(f);
-			try {
-				StreamUtils.copy(fis, response.getOutputStream());
-				response.getOutputStream().flush();
-			} catch (IOException e) {
-				e.printStackTrace();
-			} finally {
-				StreamUtils.closeQuietly(fis);
+			fis = new FileInputStream(f);
+			FileChannel channel = fis.getChannel();
+
+			if (ranges.isEmpty() || ranges.size() > MAX_RANGES) {
+				setContentLength(response, size);
+				if (!head)
+					transfer(channel, 0, size, response);
+			} else if (ranges.size() == 1) {
+				WebRequest.ByteRange range = ranges.get(0);
+				response.setStatus(206);
+				response.setHeader("Content-Range", contentRange(range, size));
+				setContentLength(response, range.getLength());
+				if (!head)
+					transfer(channel, range.getFirstByte(), range.getLength(), response);
+			} else {
+				String boundary = Long.toHexString(Double.doubleToLongBits(Math.random()));
+				String[] partHeaders = new String[ranges.size()];
+				long length = 0;
+				for (int i = 0; i < ranges.size(); ++i) {
+					WebRequest.ByteRange range = ranges.get(i);
+					partHeaders[i] = "\r\n--" + boundary + "\r\nContent-Type: " + mimeType_ + "\r\nContent-Range: "
+							+ contentRange(range, size) + "\r\n\r\n";
+					length += partHeaders[i].length() + range.getLength();
+				}
+				String end = "\r\n--" + boundary + "--\r\n";
+				length += end.length();
+
+				response.setStatus(206);
+				response.setContentType("multipart/byteranges; boundary=" + boundary);
+				setContentLength(response, length);
+				if (!head) {
+					OutputStream out = response.getOutputStream();
+					for (int i = 0; i < ranges.size(); ++i) {
+						WebRequest.ByteRange range = ranges.get(i);
+						out.write(partHeaders[i].getBytes("ISO-8859-1"));
+						transfer(channel, range.getFirstByte(), range.getLength(), response);
+					}
+					out.write(end.getBytes("ISO-8859-1"));
+				}
 			}
+
+			response.getOutputStream().flush();
 		} catch (FileNotFoundException e) {
 			System.err.println("Could not find file: " + fileName_);
 			response.setStatus(404);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			StreamUtils.closeQuietly(fis);
+		}
+	}
+
+	private static String contentRange(WebRequest.ByteRange range, long size) {
+		return "bytes " + range.getFirstByte() + "-" + range.getLastByte() + "/" + size;
+	}
+
+	private static void setContentLength(WebResponse response, long length) {
+		if (length <= Integer.MAX_VALUE)
+			response.setContentLength((int) length);
+		else
+			response.setHeader("Content-Length", String.valueOf(length));
+	}
+
+	private static void transfer(FileChannel channel, long position, long count, WebResponse response)
+			throws IOException {
+		OutputStream out = response.getOutputStream();
+		WritableByteChannel target;
+		if (out instanceof WritableByteChannel)
+			target = (WritableByteChannel) out;
+		else
+			target = Channels.newChannel(out);
+
+		while (count > 0) {
+			long n = channel.transferTo(position, count, target);
+			if (n <= 0)
+				throw new EOFException("File truncated while streaming");
+			position += n;
+			count -= n;
 		}
 	}
 }
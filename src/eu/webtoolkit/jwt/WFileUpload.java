@@ -90,12 +90,18 @@ public class WFileUpload extends WWebWidget {
 		this.dataReceived_ = new Signal2<Long, Long>(this);
 		this.progressBar_ = null;
 		this.tooLargeSize_ = 0;
+		this.chunkSize_ = 0;
 		this.setInline(true);
 		this.fileTooLargeImpl().addListener(this, new Signal.Listener() {
 			public void trigger() {
 				WFileUpload.this.handleFileTooLargeImpl();
 			}
 		});
+		this.uploadFailed().addListener(this, new Signal.Listener() {
+			public void trigger() {
+				WFileUpload.this.onUploadFailed();
+			}
+		});
 		this.create();
 	}
 
@@ -110,6 +116,10 @@ public class WFileUpload extends WWebWidget {
 	}
 
 	public void remove() {
+		if (this.fileUploadTarget_ != null) {
+			((WFileUploadResource) this.fileUploadTarget_)
+					.discardChunkedUpload();
+		}
 		if (this.flags_.get(BIT_UPLOADING)) {
 			WApplication.getInstance().enableUpdates(false);
 		}
@@ -143,6 +153,43 @@ public class WFileUpload extends WWebWidget {
 		return this.flags_.get(BIT_MULTIPLE);
 	}
 
+	/**
+	 * Sets whether files are uploaded in chunks.
+	 * <p>
+	 * In chunked mode, the selected files are not posted using a form, but sent
+	 * in chunks of at most <i>chunkSize</i> bytes, each with a
+	 * <code>Content-Range</code> header. Every chunk is written at its offset in
+	 * the spool file as it is received. When a chunk fails (e.g. because of a
+	 * network error), the browser queries the offset up to which the file has
+	 * been received, and resumes the upload from there, rather than starting
+	 * over. The {@link WFileUpload#dataReceived() dataReceived()} signal is
+	 * emitted for every chunk, and the {@link WFileUpload#uploaded() uploaded()}
+	 * signal once all files have been received. When the upload cannot be
+	 * completed, the {@link WFileUpload#uploadFailed() uploadFailed()} signal is
+	 * emitted instead.
+	 * <p>
+	 * Chunked uploads require a browser which supports the HTML5 File API.
+	 * Other browsers fall back to a regular upload.
+	 * <p>
+	 * The default value is 0 (chunked uploads are disabled).
+	 * <p>
+	 * 
+	 * @see Configuration#setUploadFileSizeMax(long)
+	 */
+	public void setChunkedUpload(int chunkSize) {
+		this.chunkSize_ = Math.max(0, chunkSize);
+	}
+
+	/**
+	 * Returns the chunk size for chunked uploads.
+	 * <p>
+	 * 
+	 * @see WFileUpload#setChunkedUpload(int chunkSize)
+	 */
+	public int getChunkedUpload() {
+		return this.chunkSize_;
+	}
+
 	/**
 	 * Sets the size of the file input.
 	 */
@@ -294,6 +341,21 @@ public class WFileUpload extends WWebWidget {
 		return this.fileTooLarge_;
 	}
 
+	/**
+	 * Signal emitted when a chunked upload failed.
+	 * <p>
+	 * With a chunked upload (see {@link WFileUpload#setChunkedUpload(int)}), this
+	 * signal is emitted instead of {@link WFileUpload#uploaded() uploaded()} when
+	 * no file was selected, or when the server did not acknowledge the complete
+	 * upload, even after retrying. The data that was received is discarded.
+	 * <p>
+	 * 
+	 * @see WFileUpload#uploaded()
+	 */
+	public EventSignal uploadFailed() {
+		return this.voidEventSignal(UPLOADFAILED_SIGNAL, true);
+	}
+
 	/**
 	 * Signal emitted when the user selected a new file.
 	 * <p>
@@ -398,6 +460,7 @@ public class WFileUpload extends WWebWidget {
 	private static String CHANGE_SIGNAL = "M_change";
 	private static String UPLOADED_SIGNAL = "M_uploaded";
 	private static String FILETOOLARGE_SIGNAL = "M_filetoolarge";
+	private static String UPLOADFAILED_SIGNAL = "M_uploadfailed";
 	private static final int BIT_DO_UPLOAD = 0;
 	private static final int BIT_ENABLE_AJAX = 1;
 	private static final int BIT_UPLOADING = 2;
@@ -410,6 +473,7 @@ public class WFileUpload extends WWebWidget {
 	private Signal2<Long, Long> dataReceived_;
 	private WResource fileUploadTarget_;
 	private WProgressBar progressBar_;
+	private int chunkSize_;
 
 	private void create() {
 		boolean methodIframe = WApplication.getInstance().getEnvironment()
@@ -481,7 +545,20 @@ public class WFileUpload extends WWebWidget {
 					.getInstance()));
 		}
 		if (this.fileUploadTarget_ != null && this.flags_.get(BIT_DO_UPLOAD)) {
-			element.callMethod("submit()");
+			if (this.chunkSize_ > 0) {
+				WApplication app = WApplication.getInstance();
+				app.loadJavaScript("js/WFileUpload.js", wtjs1());
+				element.callJavaScript("Wt3_3_0.chunkedUpload("
+						+ app.getJavaScriptClass() + ","
+						+ this.getJsRef() + ","
+						+ WWebWidget.jsStringLiteral(this.fileUploadTarget_
+								.getUrl(), '\'') + "," + this.chunkSize_
+						+ ",'" + this.uploaded().encodeCmd() + "','"
+						+ this.fileTooLargeImpl().encodeCmd() + "','"
+						+ this.uploadFailed().encodeCmd() + "');", false);
+			} else {
+				element.callMethod("submit()");
+			}
 			this.flags_.clear(BIT_DO_UPLOAD);
 			if (containsProgress) {
 				inputE = DomElement.getForUpdate("in" + this.getId(),
@@ -620,6 +697,14 @@ public class WFileUpload extends WWebWidget {
 		}
 	}
 
+	private void onUploadFailed() {
+		this.onUploaded();
+		if (this.fileUploadTarget_ instanceof WFileUploadResource) {
+			((WFileUploadResource) this.fileUploadTarget_)
+					.discardChunkedUpload();
+		}
+	}
+
 	long tooLargeSize_;
 
 	void setFormData(WObject.FormData formData) {
@@ -640,4 +725,12 @@ public class WFileUpload extends WWebWidget {
 			}
 		}
 	}
+
+	static WJavaScriptPreamble wtjs1() {
+		return new WJavaScriptPreamble(
+				JavaScriptScope.WtClassScope,
+				JavaScriptObjectType.JavaScriptFunction,
+				"chunkedUpload",
+				"function(b,g,p,q,r,s,t){function h(a){b._p_.update(null,a,null,true)}function i(a,e,j){var c=d[a],f=Math.min(e+q,c.size),k=c.size==0?\"bytes */0\":j?\"bytes */\"+c.size:\"bytes \"+e+\"-\"+(f-1)+\"/\"+c.size,l=new XMLHttpRequest;l.open(\"POST\",p+(p.indexOf(\"?\")==-1?\"?\":\"&\")+\"upload=\"+m+\"&file=\"+a+\"&files=\"+d.length+\"&size=\"+w+\"&name=\"+encodeURIComponent(c.name)+\"&type=\"+encodeURIComponent(c.type||\"\"),true);l.setRequestHeader(\"Content-Type\",\"application/octet-stream\");l.setRequestHeader(\"Content-Range\",k);l.onreadystatechange=function(){if(l.readyState==4){var o=null;if(l.status==200)try{o=JSON.parse(l.responseText)}catch(u){}if(l.status==413)h(s);else if(o){n=0;if(o.done)h(r);else if(o.offset<c.size)i(a,o.offset,false);else if(a+1<d.length)i(a+1,0,false);else h(t)}else if(++n<=5)setTimeout(function(){i(a,e,true)},1E3*n);else h(t)}};l.send(c.size==0||j?null:c.slice(e,f))}var v=document.getElementById(\"in\"+g.id),d=v.files;if(!d||!window.JSON||!window.Blob||!Blob.prototype.slice)g.submit();else if(d.length==0)h(t);else{var m=(new Date).getTime().toString(36)+Math.random().toString(36).substring(2),n=0,w=0;for(var j=0;j<d.length;++j)w+=d[j].size;i(0,0,false)}}");
+	}
 }
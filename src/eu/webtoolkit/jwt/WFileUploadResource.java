@@ -30,11 +30,15 @@ class WFileUploadResource extends WResource {
 
 	protected void handleRequest(WebRequest request, WebResponse response)
 			throws IOException {
+		if (request.getHeader("Content-Range") != null) {
+			this.handleChunk(request, response);
+			return;
+		}
 		boolean triggerUpdate = false;
 		List<UploadedFile> files = new ArrayList<UploadedFile>();
 		CollectionUtils.findInMultimap(request.getUploadedFiles(), "data",
 				files);
-		if (!(0 != 0)) {
+		if (!(request.getPostDataExceeded() != 0)) {
 			if (!files.isEmpty() || request.getParameter("data") != null) {
 				triggerUpdate = true;
 			}
@@ -45,7 +49,7 @@ class WFileUploadResource extends WResource {
 		Writer o = response.out();
 		o
 				.append("<!DOCTYPE html><html>\n<head><script type=\"text/javascript\">\nfunction load() { ");
-		if (triggerUpdate || 0 != 0) {
+		if (triggerUpdate || request.getPostDataExceeded() != 0) {
 			o.append("if (window.parent.").append(
 					WApplication.getInstance().getJavaScriptClass()).append(
 					") ");
@@ -59,7 +63,7 @@ class WFileUploadResource extends WResource {
 								this.fileUpload_.uploaded().encodeCmd())
 						.append("', null, true);");
 			} else {
-				if (0 != 0) {
+				if (request.getPostDataExceeded() != 0) {
 					logger
 							.debug(new StringWriter()
 									.append(
@@ -78,8 +82,8 @@ class WFileUploadResource extends WResource {
 					"Resource handleRequest(): no signal").toString());
 		}
 		o.append("}\n</script></head><body onload=\"load();\"></body></html>");
-		if (0 != 0) {
-			this.fileUpload_.tooLargeSize_ = 0;
+		if (request.getPostDataExceeded() != 0) {
+			this.fileUpload_.tooLargeSize_ = request.getPostDataExceeded();
 		} else {
 			if (!files.isEmpty()) {
 				this.fileUpload_.setFiles(files);
@@ -87,6 +91,255 @@ class WFileUploadResource extends WResource {
 		}
 	}
 
+	/**
+	 * Discards a partially received chunked upload.
+	 */
+	void discardChunkedUpload() {
+		if (this.chunkedUpload_ != null) {
+			this.chunkedUpload_.discard();
+			this.chunkedUpload_ = null;
+		}
+	}
+
+	/*
+	 * Handles a chunk of a chunked upload (see WFileUpload#setChunkedUpload()).
+	 * 
+	 * A chunk is the raw body of a request with a "Content-Range: bytes a-b/total"
+	 * header, and is written at its offset in the spool file. A request with
+	 * "Content-Range: bytes * /total" carries no data and only queries the offset,
+	 * which allows a client to resume an interrupted upload.
+	 * 
+	 * The body of the chunk has already been written into the spool file while the
+	 * request was parsed (see WebRequest#getUploadChunk()), so that a slow client
+	 * does not hold the session lock. Only the received range is recorded here.
+	 * 
+	 * The response reports the acknowledged offset, i.e. the length of the
+	 * contiguous data received from the start of the file.
+	 */
+	private void handleChunk(WebRequest request, WebResponse response)
+			throws IOException {
+		response.addHeader("Cache-Control", "no-cache, no-store");
+		long[] range = UploadChunk.parseContentRange(request
+				.getHeader("Content-Range"));
+		String id = request.getParameter("upload");
+		int index = parseInt(request.getParameter("file"), -1);
+		int count = parseInt(request.getParameter("files"), 1);
+		if (range == null || id == null || !UploadChunk.isValidId(id)
+				|| index < 0
+				|| count <= 0 || count > MAX_CHUNKED_FILES || index >= count) {
+			response.setStatus(400);
+			return;
+		}
+		long fileSizeMax = WApplication.getInstance().getEnvironment()
+				.getServer().getConfiguration().getUploadFileSizeMax();
+		if (fileSizeMax >= 0 && range[2] > fileSizeMax) {
+			logger.debug(new StringWriter().append(
+					"Resource handleChunk(): file too large").toString());
+			this.discardChunkedUpload();
+			this.fileUpload_.tooLargeSize_ = range[2];
+			response.setStatus(413);
+			return;
+		}
+		if (this.chunkedUpload_ == null || !this.chunkedUpload_.id.equals(id)) {
+			this.discardChunkedUpload();
+			this.chunkedUpload_ = new ChunkedUpload(id, count);
+		}
+		ChunkedUpload upload = this.chunkedUpload_;
+		if (upload.files.length != count) {
+			response.setStatus(400);
+			return;
+		}
+		ChunkedFile file = upload.getFile(index, range[2], request);
+		if (file == null) {
+			response.setStatus(416);
+			return;
+		}
+		UploadChunk chunk = request.getUploadChunk();
+		if (chunk != null && file.uploaded == null) {
+			file.addChunk(chunk);
+		}
+		long offset = file.getOffset();
+		if (file.uploaded == null && offset == file.total) {
+			file.complete();
+		}
+		boolean done = upload.isComplete();
+		long received = upload.getReceived();
+		long total = Math.max(parseLong(request.getParameter("size"), -1),
+				received);
+		this.dataReceived().trigger(received, total);
+		if (offset > 0) {
+			response.addHeader("Range", "bytes=0-" + (offset - 1));
+		}
+		response.setContentType("application/json; charset=utf-8");
+		Writer o = response.out();
+		o.append("{\"offset\":").append(String.valueOf(offset)).append(
+				",\"done\":").append(String.valueOf(done)).append("}");
+		if (done) {
+			logger.debug(new StringWriter().append(
+					"Resource handleChunk(): upload complete").toString());
+			this.fileUpload_.setFiles(upload.getUploadedFiles());
+			this.chunkedUpload_ = null;
+		}
+	}
+
+	/*
+	 * The files of a single chunked upload.
+	 */
+	static class ChunkedUpload {
+		String id;
+		ChunkedFile[] files;
+
+		ChunkedUpload(String id, int count) {
+			this.id = id;
+			this.files = new ChunkedFile[count];
+		}
+
+		ChunkedFile getFile(int index, long total, WebRequest request)
+				throws IOException {
+			ChunkedFile result = this.files[index];
+			if (result == null) {
+				UploadChunk.SpoolFile spoolFile = UploadChunk
+						.claimSpoolFile(request);
+				if (spoolFile == null) {
+					return null;
+				}
+				String clientFileName = request.getParameter("name");
+				String contentType = request.getParameter("type");
+				result = this.files[index] = new ChunkedFile(total,
+						clientFileName != null ? clientFileName : "",
+						contentType != null ? contentType : "", spoolFile);
+			} else {
+				if (result.total != total) {
+					return null;
+				}
+			}
+			return result;
+		}
+
+		boolean isComplete() {
+			for (ChunkedFile file : this.files) {
+				if (file == null || file.uploaded == null) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		long getReceived() {
+			long result = 0;
+			for (ChunkedFile file : this.files) {
+				if (file != null) {
+					result += file.getOffset();
+				}
+			}
+			return result;
+		}
+
+		List<UploadedFile> getUploadedFiles() {
+			List<UploadedFile> result = new ArrayList<UploadedFile>();
+			for (ChunkedFile file : this.files) {
+				result.add(file.uploaded);
+			}
+			return result;
+		}
+
+		void discard() {
+			for (ChunkedFile file : this.files) {
+				if (file != null && file.uploaded == null) {
+					file.spoolFile.delete();
+				}
+			}
+		}
+	}
+
+	/*
+	 * A file of a chunked upload, with the ranges of it that have been received.
+	 * 
+	 * The ranges are kept in a sorted map, from the start to the end of each range.
+	 */
+	static class ChunkedFile {
+		long total;
+		String clientFileName;
+		String contentType;
+		UploadChunk.SpoolFile spoolFile;
+		SortedMap<Long, Long> received;
+		UploadedFile uploaded;
+
+		ChunkedFile(long total, String clientFileName, String contentType,
+				UploadChunk.SpoolFile spoolFile) {
+			this.total = total;
+			this.clientFileName = clientFileName;
+			this.contentType = contentType;
+			this.spoolFile = spoolFile;
+			this.received = new TreeMap<Long, Long>();
+			this.uploaded = null;
+		}
+
+		/*
+		 * Records a chunk which has been written into the spool file. A chunk that was
+		 * written into another spool file (e.g. when the upload was restarted while it
+		 * was received) is ignored: the client resends it, starting from the
+		 * acknowledged offset.
+		 */
+		void addChunk(UploadChunk chunk) {
+			if (chunk.getSpoolFile() == this.spoolFile && chunk.getLength() > 0) {
+				this.addRange(chunk.getPosition(), chunk.getPosition()
+						+ chunk.getLength());
+			}
+		}
+
+		void complete() {
+			this.spoolFile.keep();
+			this.uploaded = new UploadedFile(this.spoolFile.getFile()
+					.getAbsolutePath(), this.clientFileName, this.contentType);
+		}
+
+		long getOffset() {
+			if (!this.received.isEmpty() && this.received.firstKey() == 0) {
+				return this.received.get(0L);
+			} else {
+				return 0;
+			}
+		}
+
+		private void addRange(long start, long end) {
+			SortedMap<Long, Long> before = this.received.headMap(start + 1);
+			if (!before.isEmpty()) {
+				long beforeStart = before.lastKey();
+				long beforeEnd = before.get(beforeStart);
+				if (beforeEnd >= start) {
+					start = beforeStart;
+					end = Math.max(end, beforeEnd);
+				}
+			}
+			SortedMap<Long, Long> next = this.received.tailMap(start);
+			while (!next.isEmpty() && next.firstKey() <= end) {
+				long nextStart = next.firstKey();
+				end = Math.max(end, next.get(nextStart));
+				this.received.remove(nextStart);
+			}
+			this.received.put(start, end);
+		}
+	}
+
+	private static int parseInt(String s, int defaultValue) {
+		return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE,
+				parseLong(s, defaultValue)));
+	}
+
+	private static long parseLong(String s, long defaultValue) {
+		if (s == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(s);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static final int MAX_CHUNKED_FILES = 1000;
 	private WFileUpload fileUpload_;
+	private ChunkedUpload chunkedUpload_;
 	private static UploadedFile uploaded;
 }
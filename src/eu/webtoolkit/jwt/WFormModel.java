@@ -218,8 +218,10 @@ public class WFormModel extends WObject {
 		if (i != null) {
 			i.visible = visible;
 		} else {
-			logger.error(new StringWriter().append("setVisible(): ").append(
-					field).append(" not in model").toString());
+			if (logger.isErrorEnabled()) {
+				logger.error(new StringWriter().append("setVisible(): ").append(
+						field).append(" not in model").toString());
+			}
 		}
 	}
 
@@ -256,8 +258,10 @@ public class WFormModel extends WObject {
 		if (i != null) {
 			i.readOnly = readOnly;
 		} else {
-			logger.error(new StringWriter().append("setReadOnly(): ").append(
-					field).append(" not in model").toString());
+			if (logger.isErrorEnabled()) {
+				logger.error(new StringWriter().append("setReadOnly(): ").append(
+						field).append(" not in model").toString());
+			}
 		}
 	}
 
@@ -343,8 +347,10 @@ public class WFormModel extends WObject {
 				this.addChild(validator);
 			}
 		} else {
-			logger.error(new StringWriter().append("setValidator(): ").append(
-					field).append(" not in model").toString());
+			if (logger.isErrorEnabled()) {
+				logger.error(new StringWriter().append("setValidator(): ").append(
+						field).append(" not in model").toString());
+			}
 		}
 	}
 
@@ -409,8 +415,10 @@ public class WFormModel extends WObject {
 		if (i != null) {
 			i.validated = validated;
 		} else {
-			logger.error(new StringWriter().append("setValidated(): ").append(
-					field).append(" not in model").toString());
+			if (logger.isErrorEnabled()) {
+				logger.error(new StringWriter().append("setValidated(): ").append(
+						field).append(" not in model").toString());
+			}
 		}
 	}
 
@@ -463,8 +471,10 @@ public class WFormModel extends WObject {
 			i.validation = result;
 			this.setValidated(field, true);
 		} else {
-			logger.error(new StringWriter().append("setValidation(): ").append(
-					field).append(" not in model").toString());
+			if (logger.isErrorEnabled()) {
+				logger.error(new StringWriter().append("setValidation(): ").append(
+						field).append(" not in model").toString());
+			}
 		}
 	}
 
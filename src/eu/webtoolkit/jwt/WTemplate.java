@@ -173,9 +173,11 @@ public class WTemplate extends WInteractWidget {
 			result.append(s.toString());
 			return true;
 		} else {
-			logger.error(new StringWriter().append(
-					"Functions::tr(): expects at least one argument")
-					.toString());
+			if (logger.isErrorEnabled()) {
+				logger.error(new StringWriter().append(
+						"Functions::tr(): expects at least one argument")
+						.toString());
+			}
 			return false;
 		}
 	}
@@ -203,10 +205,12 @@ public class WTemplate extends WInteractWidget {
 				return false;
 			}
 		} else {
-			logger
-					.error(new StringWriter().append(
-							"Functions::tr(): expects exactly one argument")
-							.toString());
+			if (logger.isErrorEnabled()) {
+				logger
+						.error(new StringWriter().append(
+								"Functions::tr(): expects exactly one argument")
+								.toString());
+			}
 			return false;
 		}
 	}
@@ -971,10 +975,12 @@ public class WTemplate extends WInteractWidget {
 						args.clear();
 						int endVar = parseArgs(text, endName, args);
 						if (endVar == -1) {
-							logger.error(new StringWriter().append(
-									"variable syntax error near \"").append(
-									text.substring(pos)).append("\"")
-									.toString());
+							if (logger.isErrorEnabled()) {
+								logger.error(new StringWriter().append(
+										"variable syntax error near \"").append(
+										text.substring(pos)).append("\"")
+										.toString());
+							}
 							return;
 						}
 						String name = text.substring(startName, startName
@@ -995,11 +1001,13 @@ public class WTemplate extends WInteractWidget {
 										|| !conditions.get(
 												conditions.size() - 1).equals(
 												cond)) {
-									logger
-											.error(new StringWriter()
-													.append(
-															"mismatching condition block end: ")
-													.append(cond).toString());
+									if (logger.isErrorEnabled()) {
+										logger
+												.error(new StringWriter()
+														.append(
+																"mismatching condition block end: ")
+														.append(cond).toString());
+									}
 									return;
 								}
 								conditions.remove(conditions.size() - 1);
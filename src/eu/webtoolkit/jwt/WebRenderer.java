@@ -66,9 +66,11 @@ class WebRenderer implements SlotLearnerInterface {
 	}
 
 	public void needUpdate(WWidget w, boolean laterOnly) {
-		logger.debug(new StringWriter().append("needUpdate: ")
-				.append(w.getId()).append(" (").append("(fixme)").append(")")
-				.toString());
+		if (logger.isDebugEnabled()) {
+			logger.debug(new StringWriter().append("needUpdate: ")
+					.append(w.getId()).append(" (").append("(fixme)").append(")")
+					.toString());
+		}
 		this.updateMap_.add(w);
 		if (!laterOnly) {
 			this.moreUpdates_ = true;
@@ -76,9 +78,11 @@ class WebRenderer implements SlotLearnerInterface {
 	}
 
 	public void doneUpdate(WWidget w) {
-		logger.debug(new StringWriter().append("doneUpdate: ")
-				.append(w.getId()).append(" (").append("(fixme)").append(")")
-				.toString());
+		if (logger.isDebugEnabled()) {
+			logger.debug(new StringWriter().append("doneUpdate: ")
+					.append(w.getId()).append(" (").append("(fixme)").append(")")
+					.toString());
+		}
 		this.updateMap_.remove(w);
 	}
 
@@ -155,6 +159,7 @@ class WebRenderer implements SlotLearnerInterface {
 
 	public void serveResponse(WebResponse response) throws IOException {
 		this.session_.setTriggerUpdate(false);
+		long start = System.nanoTime();
 		switch (response.getResponseType()) {
 		case Update:
 			this.serveJavaScriptUpdate(response);
@@ -171,6 +176,8 @@ class WebRenderer implements SlotLearnerInterface {
 			this.serveMainscript(response);
 			break;
 		}
+		this.session_.getController().getMetrics().rendered(
+				response.getResponseType(), System.nanoTime() - start);
 	}
 
 	public void serveError(int status, WebResponse response, String message)
@@ -206,7 +213,7 @@ class WebRenderer implements SlotLearnerInterface {
 			}
 			app.styleSheetsAdded_ = 0;
 			this.initialStyleRendered_ = true;
-			response.out().append(out.toString());
+			response.write(out);
 		}
 	}
 
@@ -263,8 +270,10 @@ class WebRenderer implements SlotLearnerInterface {
 		if (this.solution_.length() != 0) {
 			String ackPuzzleE = request.getParameter("ackPuzzle");
 			if (!(ackPuzzleE != null)) {
-				logger.warn(new StringWriter().append("secure:").append(
-						"Ajax puzzle fail: solution missing").toString());
+				if (logger.isWarnEnabled()) {
+					logger.warn(new StringWriter().append("secure:").append(
+							"Ajax puzzle fail: solution missing").toString());
+				}
 				return false;
 			}
 			String ackPuzzle = ackPuzzleE;
@@ -290,10 +299,12 @@ class WebRenderer implements SlotLearnerInterface {
 				fail = true;
 			}
 			if (fail) {
-				logger.warn(new StringWriter().append("secure:").append(
-						"Ajax puzzle fail: '").append(ackPuzzle).append(
-						"' vs '").append(this.solution_).append('\'')
-						.toString());
+				if (logger.isWarnEnabled()) {
+					logger.warn(new StringWriter().append("secure:").append(
+							"Ajax puzzle fail: '").append(ackPuzzle).append(
+							"' vs '").append(this.solution_).append('\'')
+							.toString());
+				}
 				this.solution_ = "";
 				return false;
 			} else {
@@ -396,9 +407,17 @@ class WebRenderer implements SlotLearnerInterface {
 		}
 	}
 
+	private void setCompression(WebResponse response) {
+		Configuration conf = this.session_.getController().getConfiguration();
+		if (conf.compressResponses()) {
+			response.enableCompression(conf.getCompressionThreshold());
+		}
+	}
+
 	private void serveJavaScriptUpdate(WebResponse response) throws IOException {
 		this.setCaching(response, false);
 		this.setHeaders(response, "text/javascript; charset=UTF-8");
+		this.setCompression(response);
 		if (this.session_.sessionIdChanged_) {
 			this.collectedJS1_.append(
 					this.session_.getApp().getJavaScriptClass()).append(
@@ -410,30 +429,48 @@ class WebRenderer implements SlotLearnerInterface {
 		if (!this.rendered_) {
 			this.serveMainAjax(out);
 		} else {
+			long collectStart = this.session_
+					.traceStart(RequestTracer.Phase.CollectJavaScript);
 			this.collectJavaScript();
+			this.session_.traceEnd(RequestTracer.Phase.CollectJavaScript,
+					collectStart, this.collectedJS1_.length()
+							+ this.collectedJS2_.length());
 			this.addResponseAckPuzzle(out);
 			this.renderSetServerPush(out);
-			logger.debug(new StringWriter().append("js: ").append(
-					this.collectedJS1_.toString()).append(
-					this.collectedJS2_.toString()).toString());
+			if (logger.isDebugEnabled()) {
+				logger.debug(new StringWriter().append("js: ").append(
+						this.collectedJS1_.toString()).append(
+						this.collectedJS2_.toString()).toString());
+			}
 			out.append(this.collectedJS1_.toString()).append(
 					this.collectedJS2_.toString());
 			if (response.isWebSocketRequest() || response.isWebSocketMessage()) {
 				this.setJSSynced(false);
 			}
 		}
-		response.out().append(out.toString());
+		long serializeStart = this.session_
+				.traceStart(RequestTracer.Phase.Serialize);
+		response.write(out);
+		this.session_.traceEnd(RequestTracer.Phase.Serialize, serializeStart,
+				out.length());
 	}
 
 	private void serveMainscript(WebResponse response) throws IOException {
 		Configuration conf = this.session_.getController().getConfiguration();
 		boolean widgetset = this.session_.getType() == EntryPointType.WidgetSet;
-		boolean serveSkeletons = !conf.splitScript()
-				|| response.getParameter("skeleton") != null;
-		boolean serveRest = !conf.splitScript() || !serveSkeletons;
+		boolean splitScript = conf.splitScript() && !widgetset;
+		boolean serveSkeletons = !splitScript
+				|| response.getParameter("skeleton").length() != 0;
+		boolean serveRest = !splitScript || !serveSkeletons;
+		boolean cachedSkeleton = splitScript && serveSkeletons;
 		this.session_.sessionIdChanged_ = false;
-		this.setCaching(response, conf.splitScript() && serveSkeletons);
+		if (!cachedSkeleton) {
+			this.setCaching(response, false);
+		}
 		this.setHeaders(response, "text/javascript; charset=UTF-8");
+		if (!cachedSkeleton) {
+			this.setCompression(response);
+		}
 		StringBuilder out = new StringBuilder();
 		if (!widgetset) {
 			String redirect = this.session_.getRedirect();
@@ -449,80 +486,26 @@ class WebRenderer implements SlotLearnerInterface {
 		final boolean innerHtml = !xhtml
 				|| this.session_.getEnv().agentIsGecko();
 		if (serveSkeletons) {
-			boolean haveJQuery = app.isCustomJQuery();
-			if (!haveJQuery) {
-				out.append("if (typeof window.$ === 'undefined') {");
-				out.append(WtServlet.JQuery_js);
-				out.append('}');
-			}
-			List<String> parts = new ArrayList<String>();
-			String Wt_js_combined = "";
-			if (parts.size() > 1) {
-				for (int i = 0; i < parts.size(); ++i) {
-					Wt_js_combined += parts.get(i);
-				}
-			}
-			FileServe script = new FileServe(parts.size() > 1 ? Wt_js_combined
-					: WtServlet.Wt_js);
-			script
-					.setCondition(
-							"CATCH_ERROR",
-							conf.getErrorReporting() != Configuration.ErrorReporting.NoErrors);
-			script
-					.setCondition(
-							"SHOW_STACK",
-							conf.getErrorReporting() == Configuration.ErrorReporting.ErrorMessageWithStack);
-			script.setCondition("UGLY_INTERNAL_PATHS", this.session_
-					.isUseUglyInternalPaths());
-			script.setCondition("DYNAMIC_JS", false);
-			script.setVar("WT_CLASS", "Wt3_3_0");
-			script.setVar("APP_CLASS", app.getJavaScriptClass());
-			script.setCondition("STRICTLY_SERIALIZED_EVENTS", conf
-					.serializedEvents());
-			script.setCondition("WEB_SOCKETS", conf.webSockets());
-			script.setVar("INNER_HTML", innerHtml);
-			script.setVar("ACK_UPDATE_ID", this.expectedAckId_);
-			script.setVar("SESSION_URL", WWebWidget.jsStringLiteral(this
-					.getSessionUrl()));
-			String deployPath = this.session_.getEnv().publicDeploymentPath_;
-			if (deployPath.length() == 0) {
-				deployPath = this.session_.getDeploymentPath();
-			}
-			script
-					.setVar("DEPLOY_PATH", WWebWidget
-							.jsStringLiteral(deployPath));
-			int keepAlive;
-			if (conf.getSessionTimeout() == -1) {
-				keepAlive = 1000000;
-			} else {
-				keepAlive = conf.getSessionTimeout() / 2;
-			}
-			script.setVar("KEEP_ALIVE", String.valueOf(keepAlive));
-			script.setVar("INDICATOR_TIMEOUT", conf.getIndicatorTimeout());
-			script.setVar("SERVER_PUSH_TIMEOUT",
-					conf.getServerPushTimeout() * 1000);
-			script.setVar("CLOSE_CONNECTION", false);
-			String params = "";
-			if (this.session_.getType() == EntryPointType.WidgetSet) {
-				Map<String, String[]> m = this.session_.getEnv()
-						.getParameterMap();
-				for (Iterator<Map.Entry<String, String[]>> i_it = m.entrySet()
-						.iterator(); i_it.hasNext();) {
-					Map.Entry<String, String[]> i = i_it.next();
-					if (params.length() != 0) {
-						params += '&';
-					}
-					params += Utils.urlEncode(i.getKey()) + '='
-							+ Utils.urlEncode(i.getValue()[0]);
-				}
+			if (cachedSkeleton) {
+				this.serveCachedScript(response, this.getSkeleton());
+				return;
 			}
-			script.setVar("PARAMS", params);
+			boolean haveJQuery = app != null && app.isCustomJQuery();
+			FileServe script = this.createWtJs(false);
+			this.streamJQuery(out, haveJQuery);
 			script.stream(out);
 		}
 		if (!serveRest) {
-			response.out().append(out.toString());
+			response.write(out);
 			return;
 		}
+		if (splitScript) {
+			out.append(app.getJavaScriptClass()).append("._p_.setSessionUrl(")
+					.append(WWebWidget.jsStringLiteral(this.getSessionUrl()))
+					.append(");").append(app.getJavaScriptClass()).append(
+							"._p_.response(").append(this.expectedAckId_)
+					.append(");");
+		}
 		out.append(app.getJavaScriptClass()).append("._p_.setPage(").append(
 				this.pageId_).append(");");
 		this.formObjectsChanged_ = true;
@@ -564,7 +547,12 @@ class WebRenderer implements SlotLearnerInterface {
 				this.visibleOnly_ = false;
 				this.formObjectsChanged_ = true;
 				this.currentFormObjectsList_ = "";
+				long collectStart = this.session_
+						.traceStart(RequestTracer.Phase.CollectJavaScript);
 				this.collectJavaScript();
+				this.session_.traceEnd(RequestTracer.Phase.CollectJavaScript,
+						collectStart, this.collectedJS1_.length()
+								+ this.collectedJS2_.length());
 				this.updateLoadIndicator(this.collectedJS1_, app, true);
 				if (app.internalPathsEnabled_) {
 					out.append(app.getJavaScriptClass()).append(
@@ -572,9 +560,11 @@ class WebRenderer implements SlotLearnerInterface {
 							WWebWidget.jsStringLiteral(app.getInternalPath()))
 							.append(");\n");
 				}
-				logger.debug(new StringWriter().append("js: ").append(
-						this.collectedJS1_.toString()).append(
-						this.collectedJS2_.toString()).toString());
+				if (logger.isDebugEnabled()) {
+					logger.debug(new StringWriter().append("js: ").append(
+							this.collectedJS1_.toString()).append(
+							this.collectedJS2_.toString()).toString());
+				}
 				out.append(this.collectedJS1_.toString());
 				this.addResponseAckPuzzle(out);
 				out.append(app.getJavaScriptClass()).append("._p_.setHash(")
@@ -604,7 +594,132 @@ class WebRenderer implements SlotLearnerInterface {
 						"._p_.load(true);});\n");
 			}
 		}
-		response.out().append(out.toString());
+		response.write(out);
+	}
+
+	private void streamJQuery(StringBuilder out, boolean haveJQuery) {
+		if (!haveJQuery) {
+			out.append("if (typeof window.$ === 'undefined') {");
+			out.append(WtServlet.JQuery_js);
+			out.append('}');
+		}
+	}
+
+	/*
+	 * Returns the cached skeleton of the split script, rendering it if needed.
+	 */
+	private ScriptSkeletonCache.Entry getSkeleton() throws IOException {
+		WApplication app = this.session_.getApp();
+		boolean haveJQuery = app != null && app.isCustomJQuery();
+		FileServe script = this.createWtJs(true);
+		String key = (haveJQuery ? "" : "jquery;") + script.getKey();
+		ScriptSkeletonCache.Entry skeleton = ScriptSkeletonCache.get(key);
+		if (skeleton == null) {
+			StringBuilder out = new StringBuilder();
+			this.streamJQuery(out, haveJQuery);
+			script.stream(out);
+			skeleton = ScriptSkeletonCache.put(key, out.toString());
+		}
+		return skeleton;
+	}
+
+	private FileServe createWtJs(boolean skeleton) {
+		Configuration conf = this.session_.getController().getConfiguration();
+		WApplication app = this.session_.getApp();
+		final boolean xhtml = this.session_.getEnv().getContentType() == WEnvironment.ContentType.XHTML1;
+		final boolean innerHtml = !xhtml
+				|| this.session_.getEnv().agentIsGecko();
+		List<String> parts = new ArrayList<String>();
+		String Wt_js_combined = "";
+		if (parts.size() > 1) {
+			for (int i = 0; i < parts.size(); ++i) {
+				Wt_js_combined += parts.get(i);
+			}
+		}
+		FileServe script = new FileServe(parts.size() > 1 ? Wt_js_combined
+				: WtServlet.Wt_js);
+		script
+				.setCondition(
+						"CATCH_ERROR",
+						conf.getErrorReporting() != Configuration.ErrorReporting.NoErrors);
+		script
+				.setCondition(
+						"SHOW_STACK",
+						conf.getErrorReporting() == Configuration.ErrorReporting.ErrorMessageWithStack);
+		script.setCondition("UGLY_INTERNAL_PATHS", this.session_
+				.isUseUglyInternalPaths());
+		script.setCondition("DYNAMIC_JS", false);
+		script.setVar("WT_CLASS", "Wt3_3_0");
+		script.setVar("APP_CLASS", app != null ? app.getJavaScriptClass()
+				: "Wt");
+		script.setCondition("STRICTLY_SERIALIZED_EVENTS", conf
+				.serializedEvents());
+		script.setCondition("WEB_SOCKETS", conf.webSockets());
+		script.setVar("INNER_HTML", innerHtml);
+		if (skeleton) {
+			script.setVar("ACK_UPDATE_ID", 0);
+			script.setVar("SESSION_URL", "''");
+		} else {
+			script.setVar("ACK_UPDATE_ID", this.expectedAckId_);
+			script.setVar("SESSION_URL", WWebWidget.jsStringLiteral(this
+					.getSessionUrl()));
+		}
+		String deployPath = this.session_.getEnv().publicDeploymentPath_;
+		if (deployPath.length() == 0) {
+			deployPath = this.session_.getDeploymentPath();
+		}
+		script
+				.setVar("DEPLOY_PATH", WWebWidget
+						.jsStringLiteral(deployPath));
+		int keepAlive;
+		if (conf.getSessionTimeout() == -1) {
+			keepAlive = 1000000;
+		} else {
+			keepAlive = conf.getSessionTimeout() / 2;
+		}
+		script.setVar("KEEP_ALIVE", String.valueOf(keepAlive));
+		script.setVar("INDICATOR_TIMEOUT", conf.getIndicatorTimeout());
+		script.setVar("SERVER_PUSH_TIMEOUT",
+				conf.getServerPushTimeout() * 1000);
+		script.setVar("CLOSE_CONNECTION", false);
+		String params = "";
+		if (this.session_.getType() == EntryPointType.WidgetSet) {
+			Map<String, String[]> m = this.session_.getEnv()
+					.getParameterMap();
+			for (Iterator<Map.Entry<String, String[]>> i_it = m.entrySet()
+					.iterator(); i_it.hasNext();) {
+				Map.Entry<String, String[]> i = i_it.next();
+				if (params.length() != 0) {
+					params += '&';
+				}
+				params += Utils.urlEncode(i.getKey()) + '='
+						+ Utils.urlEncode(i.getValue()[0]);
+			}
+		}
+		script.setVar("PARAMS", params);
+		return script;
+	}
+
+	private void serveCachedScript(WebResponse response,
+			ScriptSkeletonCache.Entry script) throws IOException {
+		response.addHeader("Cache-Control", "max-age=31536000,private");
+		response.addHeader("ETag", script.getETag());
+		response.addHeader("Vary", "Accept-Encoding");
+		if (script.getETag().equals(
+				response.getRequestHeaderValue("If-None-Match"))) {
+			response.setStatus(304);
+			return;
+		}
+		byte[] data;
+		if (response.acceptsGzip()) {
+			response.addHeader("Content-Encoding", "gzip");
+			data = script.getGzipData();
+		} else {
+			data = script.getData();
+		}
+		response.setContentLength(data.length);
+		response.out().flush();
+		response.getOutputStream().write(data);
 	}
 
 	private void serveBootstrap(WebResponse response) throws IOException {
@@ -637,11 +752,12 @@ class WebRenderer implements SlotLearnerInterface {
 		String contentType = xhtml ? "application/xhtml+xml" : "text/html";
 		contentType += "; charset=UTF-8";
 		this.setHeaders(response, contentType);
+		this.setCompression(response);
 		StringBuilder out = new StringBuilder();
 		this.streamBootContent(response, boot, false);
 		boot.stream(out);
 		this.rendered_ = false;
-		response.out().append(out.toString());
+		response.write(out);
 	}
 
 	private void serveMainpage(WebResponse response) throws IOException {
@@ -721,12 +837,20 @@ class WebRenderer implements SlotLearnerInterface {
 		this.setCaching(response, false);
 		response.addHeader("X-Frame-Options", "SAMEORIGIN");
 		this.setHeaders(response, contentType);
+		if (!conf.streamMainPage()) {
+			this.setCompression(response);
+		}
 		this.currentFormObjectsList_ = this.createFormObjectsList(app);
 		if (hybridPage) {
 			this.streamBootContent(response, page, true);
 		}
 		StringBuilder out = new StringBuilder();
 		page.streamUntil(out, "HTML");
+		if (conf.streamMainPage()) {
+			response.write(out);
+			out.setLength(0);
+			response.flushOutput();
+		}
 		List<DomElement.TimeoutEvent> timeouts = new ArrayList<DomElement.TimeoutEvent>();
 		{
 			EscapeOStream js = new EscapeOStream();
@@ -756,7 +880,7 @@ class WebRenderer implements SlotLearnerInterface {
 		page.setVar("REFRESH", String.valueOf(refresh));
 		page.stream(out);
 		app.internalPathIsChanged_ = false;
-		response.out().append(out.toString());
+		response.write(out);
 	}
 
 	private void serveMainAjax(StringBuilder out) {
@@ -820,13 +944,17 @@ class WebRenderer implements SlotLearnerInterface {
 		if (widgetset) {
 			app.domRoot2_.rootAsJavaScript(app, s, true);
 		}
-		logger.debug(new StringWriter().append("js: ").append(s.toString())
-				.toString());
+		if (logger.isDebugEnabled()) {
+			logger.debug(new StringWriter().append("js: ").append(s.toString())
+					.toString());
+		}
 		out.append(s.toString());
 		this.setJSSynced(true);
 		this.preLearnStateless(app, this.collectedJS1_);
-		logger.debug(new StringWriter().append("js: ").append(
-				this.collectedJS1_.toString()).toString());
+		if (logger.isDebugEnabled()) {
+			logger.debug(new StringWriter().append("js: ").append(
+					this.collectedJS1_.toString()).toString());
+		}
 		out.append(this.collectedJS1_.toString());
 		this.collectedJS1_.setLength(0);
 		this.updateLoadIndicator(out, app, true);
@@ -938,10 +1066,12 @@ class WebRenderer implements SlotLearnerInterface {
 					w = w.getParent();
 				}
 				if (w != app.domRoot_ && w != app.domRoot2_) {
-					logger.debug(new StringWriter().append("ignoring: ")
-							.append(ww.getId()).append(" (").append("(fixme)")
-							.append(") ").append(w.getId()).append(" (")
-							.append("(fixme)").append(")").toString());
+					if (logger.isDebugEnabled()) {
+						logger.debug(new StringWriter().append("ignoring: ")
+								.append(ww.getId()).append(" (").append("(fixme)")
+								.append(") ").append(w.getId()).append(" (")
+								.append("(fixme)").append(")").toString());
+					}
 					depth = 0;
 				}
 				depthOrder.put(depth, ww);
@@ -956,16 +1086,20 @@ class WebRenderer implements SlotLearnerInterface {
 						w.getWebWidget().propagateRenderOk();
 						continue;
 					}
-					logger.debug(new StringWriter().append("updating: ")
-							.append(w.getId()).append(" (").append("(fixme)")
-							.append(")").toString());
+					if (logger.isDebugEnabled()) {
+						logger.debug(new StringWriter().append("updating: ")
+								.append(w.getId()).append(" (").append("(fixme)")
+								.append(")").toString());
+					}
 					if (!this.learning_ && this.visibleOnly_) {
 						if (w.isRendered()) {
 							w.getSDomChanges(changes, app);
 						} else {
-							logger.debug(new StringWriter()
-									.append("Ignoring: ").append(w.getId())
-									.toString());
+							if (logger.isDebugEnabled()) {
+								logger.debug(new StringWriter()
+										.append("Ignoring: ").append(w.getId())
+										.toString());
+							}
 						}
 					} else {
 						w.getSDomChanges(changes, app);
@@ -1155,7 +1289,11 @@ class WebRenderer implements SlotLearnerInterface {
 
 	private void collectJS(StringBuilder js) {
 		List<DomElement> changes = new ArrayList<DomElement>();
+		long collectStart = this.session_
+				.traceStart(RequestTracer.Phase.CollectChanges);
 		this.collectChanges(changes);
+		this.session_.traceEnd(RequestTracer.Phase.CollectChanges,
+				collectStart, changes.size());
 		WApplication app = this.session_.getApp();
 		if (js != null) {
 			if (!this.isPreLearning()) {
@@ -1283,6 +1421,14 @@ class WebRenderer implements SlotLearnerInterface {
 				.getEnv().pathInfo_));
 		bootJs.setCondition("COOKIE_CHECKS", false && conf.isCookieChecks());
 		bootJs.setCondition("SPLIT_SCRIPT", conf.splitScript());
+		String skeletonUrl = null;
+		if (conf.splitScript()
+				&& this.session_.getType() != EntryPointType.WidgetSet) {
+			skeletonUrl = this.getSkeleton().getUrl(this.session_);
+		}
+		bootJs.setVar("SKELETON_URL",
+				skeletonUrl != null ? this.safeJsStringLiteral(skeletonUrl)
+						: "null");
 		bootJs.setCondition("HYBRID", hybrid);
 		bootJs.setCondition("PROGRESS", hybrid
 				&& !this.session_.getEnv().hasAjax());
@@ -1292,7 +1438,7 @@ class WebRenderer implements SlotLearnerInterface {
 		bootJs.setVar("INTERNAL_PATH", this.safeJsStringLiteral(internalPath));
 		boot.streamUntil(out, "BOOT_JS");
 		bootJs.stream(out);
-		response.out().append(out.toString());
+		response.write(out);
 	}
 
 	private void addResponseAckPuzzle(StringBuilder out) {
@@ -1478,8 +1624,10 @@ class WebRenderer implements SlotLearnerInterface {
 		StringBuilder js = new StringBuilder();
 		this.collectJS(js);
 		String result = js.toString();
-		logger.debug(new StringWriter().append("learned: ").append(result)
-				.toString());
+		if (logger.isDebugEnabled()) {
+			logger.debug(new StringWriter().append("learned: ").append(result)
+					.toString());
+		}
 		if (slot.getType() == SlotType.PreLearnStateless) {
 			slot.undoTrigger();
 			this.collectJS((StringBuilder) null);
@@ -1494,6 +1642,30 @@ class WebRenderer implements SlotLearnerInterface {
 		return result;
 	}
 
+	public String learn(AbstractEventSignal signal,
+			AbstractEventSignal.LearningListener slot) throws IOException {
+		if (!this.session_.getController().getConfiguration()
+				.shareLearnedSlots()
+				|| !(signal.getSender() instanceof WWidget)) {
+			return this.learn(slot);
+		}
+		WWidget sender = (WWidget) signal.getSender();
+		String key = LearnedSlotCache.getKey(signal, slot);
+		if (key == null) {
+			return this.learn(slot);
+		}
+		String result = LearnedSlotCache.lookup(key, sender);
+		if (result != null) {
+			slot.setJavaScript(result);
+			return result;
+		}
+		result = this.learn(slot);
+		if (slot.isLearned()) {
+			LearnedSlotCache.learned(key, sender, result);
+		}
+		return result;
+	}
+
 	static boolean isAbsoluteUrl(String url) {
 		return url.indexOf("://") != -1;
 	}
@@ -60,6 +60,8 @@ class WebSession {
 		this.asyncResponse_ = null;
 		this.bootStyleResponse_ = null;
 		this.canWriteAsyncResponse_ = false;
+		this.deferredWrites_ = new ArrayList<WebResponse>();
+		this.deferredWriteSize_ = new java.util.concurrent.atomic.AtomicLong();
 		this.pollRequestsIgnored_ = 0;
 		this.progressiveBoot_ = false;
 		this.deferredRequest_ = null;
@@ -69,6 +71,16 @@ class WebSession {
 		this.newRecursiveEvent_ = false;
 		this.updatesPendingEvent_ = this.mutex_.newCondition();
 		this.updatesPending_ = false;
+		this.bootStyleEvent_ = this.mutex_.newCondition();
+		this.bootStyleWaiting_ = 0;
+		this.tracer_ = this.controller_.getConfiguration().getRequestTracer();
+		this.tracedSignal_ = null;
+		this.posted_ = new java.util.concurrent.ConcurrentLinkedQueue<WebSession.PostedFunction>();
+		this.postScheduled_ = new java.util.concurrent.atomic.AtomicBoolean();
+		this.waiting_ = new java.util.concurrent.atomic.AtomicInteger();
+		this.lastPush_ = 0;
+		this.pushScheduled_ = false;
+		this.coalescedUpdates_ = 0;
 		this.triggerUpdate_ = false;
 		this.embeddedEnv_ = new WEnvironment(this);
 		this.app_ = null;
@@ -197,6 +209,7 @@ class WebSession {
 		WebSession.Handler handler = event.impl_.handler;
 		WebRequest request = handler.getRequest();
 		WebResponse response = handler.getResponse();
+		this.tracedSignal_ = null;
 		if (WebSession.Handler.getInstance() != handler) {
 			WebSession.Handler.getInstance().setRequest(request, response);
 		}
@@ -226,16 +239,22 @@ class WebSession {
 				if (!this.env_.agentIsIE()) {
 					if (!handler.getRequest().getHeaderValue("User-Agent")
 							.equals(this.env_.getUserAgent())) {
-						logger.warn(new StringWriter().append("secure:")
-								.append("change of user-agent not allowed.")
-								.toString());
-						logger.info(new StringWriter().append(
-								"old user agent: ").append(
-								this.env_.getUserAgent()).toString());
-						logger.info(new StringWriter().append(
-								"new user agent: ").append(
-								handler.getRequest().getHeaderValue(
-										"User-Agent")).toString());
+						if (logger.isWarnEnabled()) {
+							logger.warn(new StringWriter().append("secure:")
+									.append("change of user-agent not allowed.")
+									.toString());
+						}
+						if (logger.isInfoEnabled()) {
+							logger.info(new StringWriter().append(
+									"old user agent: ").append(
+									this.env_.getUserAgent()).toString());
+						}
+						if (logger.isInfoEnabled()) {
+							logger.info(new StringWriter().append(
+									"new user agent: ").append(
+									handler.getRequest().getHeaderValue(
+											"User-Agent")).toString());
+						}
 						this.serveError(403, handler, "Forbidden");
 						return;
 					}
@@ -251,11 +270,13 @@ class WebSession {
 						}
 					}
 					if (isInvalid) {
-						logger.warn(new StringWriter().append("secure:")
-								.append("change of IP address (").append(
-										this.env_.getClientAddress()).append(
-										" -> ").append(ca).append(
-										") not allowed.").toString());
+						if (logger.isWarnEnabled()) {
+							logger.warn(new StringWriter().append("secure:")
+									.append("change of IP address (").append(
+											this.env_.getClientAddress()).append(
+											" -> ").append(ca).append(
+											") not allowed.").toString());
+						}
 						this.serveError(403, handler, "Forbidden");
 						return;
 					}
@@ -265,8 +286,10 @@ class WebSession {
 				String cookie = request.getHeaderValue("Cookie");
 				if (cookie.indexOf("Wt" + this.sessionIdCookie_) == -1) {
 					this.sessionIdCookie_ = "";
-					logger.info(new StringWriter().append(
-							"session id cookie not working").toString());
+					if (logger.isInfoEnabled()) {
+						logger.info(new StringWriter().append(
+								"session id cookie not working").toString());
+					}
 				}
 				this.sessionIdCookieChanged_ = false;
 			}
@@ -297,13 +320,16 @@ class WebSession {
 				this.render(handler);
 			} else {
 				try {
-					if (0L != 0) {
-						this.app_.requestTooLarge().trigger(0L);
+					if (request.getPostDataExceeded() != 0) {
+						this.app_.requestTooLarge().trigger(
+								request.getPostDataExceeded());
 					}
 				} catch (RuntimeException e) {
-					logger.error(new StringWriter().append(
-							"Exception in WApplication::requestTooLarge")
-							.append(e.toString()).toString());
+					if (logger.isErrorEnabled()) {
+						logger.error(new StringWriter().append(
+								"Exception in WApplication::requestTooLarge")
+								.append(e.toString()).toString());
+					}
 					throw e;
 				}
 				String hashE = request.getParameter("_");
@@ -347,16 +373,20 @@ class WebSession {
 								handler.setRequest((WebRequest) null,
 										(WebResponse) null);
 							} catch (RuntimeException e) {
-								logger.error(new StringWriter().append(
-										"Exception while streaming resource")
-										.append(e.toString()).toString());
+								if (logger.isErrorEnabled()) {
+									logger.error(new StringWriter().append(
+											"Exception while streaming resource")
+											.append(e.toString()).toString());
+								}
 								throw e;
 							}
 						} else {
-							logger.error(new StringWriter().append(
-									"decodeResource(): resource '").append(
-									resourceE).append("' not exposed")
-									.toString());
+							if (logger.isErrorEnabled()) {
+								logger.error(new StringWriter().append(
+										"decodeResource(): resource '").append(
+										resourceE).append("' not exposed")
+										.toString());
+							}
 							handler.getResponse().setContentType("text/html");
 							handler
 									.getResponse()
@@ -371,6 +401,8 @@ class WebSession {
 				} else {
 					this.env_.urlScheme_ = request.getScheme();
 					if (signalE != null) {
+						this.tracedSignal_ = signalE;
+						long validateStart = this.traceStart(RequestTracer.Phase.Validate);
 						String ackIdE = request.getParameter("ackId");
 						boolean invalidAckId = this.env_.hasAjax()
 								&& !request.isWebSocketMessage();
@@ -383,15 +415,20 @@ class WebSession {
 							} catch (NumberFormatException e) {
 							}
 						}
+						this.traceEnd(RequestTracer.Phase.Validate, validateStart, -1);
 						if (invalidAckId) {
 							if (!(ackIdE != null)) {
-								logger.warn(new StringWriter()
-										.append("secure:").append(
-												"missing ackId").toString());
+								if (logger.isWarnEnabled()) {
+									logger.warn(new StringWriter()
+											.append("secure:").append(
+													"missing ackId").toString());
+								}
 							} else {
-								logger.warn(new StringWriter()
-										.append("secure:").append(
-												"invalid ackId").toString());
+								if (logger.isWarnEnabled()) {
+									logger.warn(new StringWriter()
+											.append("secure:").append(
+													"invalid ackId").toString());
+								}
 							}
 							this.serveError(403, handler, "Forbidden");
 							return;
@@ -406,6 +443,7 @@ class WebSession {
 							if (!WtServlet.isAsyncSupported()) {
 								this.updatesPendingEvent_.signal();
 								if (!this.updatesPending_) {
+									this.beginWait();
 									try {
 										this.updatesPendingEvent_
 												.await(
@@ -414,6 +452,8 @@ class WebSession {
 																.getServerPushTimeout() * 2,
 														java.util.concurrent.TimeUnit.SECONDS);
 									} catch (InterruptedException e) {
+									} finally {
+										this.endWait();
 									}
 								}
 								if (!this.updatesPending_) {
@@ -424,15 +464,17 @@ class WebSession {
 								if (!(this.asyncResponse_ != null)
 										|| this.pollRequestsIgnored_ == 2) {
 									if (this.asyncResponse_ != null) {
-										logger
-												.info(new StringWriter()
-														.append(
-																"discarding broken asyncResponse, (ws: ")
-														.append(
-																String
-																		.valueOf(this.asyncResponse_
-																				.isWebSocketRequest()))
-														.toString());
+										if (logger.isInfoEnabled()) {
+											logger
+													.info(new StringWriter()
+															.append(
+																	"discarding broken asyncResponse, (ws: ")
+															.append(
+																	String
+																			.valueOf(this.asyncResponse_
+																					.isWebSocketRequest()))
+															.toString());
+										}
 										this.asyncResponse_.flush();
 										this.asyncResponse_ = null;
 									}
@@ -443,14 +485,16 @@ class WebSession {
 											(WebResponse) null);
 								} else {
 									++this.pollRequestsIgnored_;
-									logger
-											.debug(new StringWriter()
-													.append(
-															"ignored poll request (#")
-													.append(
-															String
-																	.valueOf(this.pollRequestsIgnored_))
-													.append(")").toString());
+									if (logger.isDebugEnabled()) {
+										logger
+												.debug(new StringWriter()
+														.append(
+																"ignored poll request (#")
+														.append(
+																String
+																		.valueOf(this.pollRequestsIgnored_))
+														.append(")").toString());
+									}
 								}
 							} else {
 								this.pollRequestsIgnored_ = 0;
@@ -462,16 +506,27 @@ class WebSession {
 							}
 						}
 						if (handler.getRequest() != null) {
-							logger.debug(new StringWriter().append("signal: ")
-									.append(signalE).toString());
+							if (logger.isDebugEnabled()) {
+								logger.debug(new StringWriter().append("signal: ")
+										.append(signalE).toString());
+							}
+							long start = System.nanoTime();
+							long dispatchStart = this.traceStart(RequestTracer.Phase.Dispatch);
 							try {
 								handler.nextSignal = -1;
 								this.notifySignal(event);
 							} catch (RuntimeException e) {
-								logger.error(new StringWriter().append(
-										"error during event handling: ")
-										.append(e.toString()).toString());
+								if (logger.isErrorEnabled()) {
+									logger.error(new StringWriter().append(
+											"error during event handling: ")
+											.append(e.toString()).toString());
+								}
 								throw e;
+							} finally {
+								this.controller_.getMetrics().eventDispatched(
+										System.nanoTime() - start);
+								this.traceEnd(RequestTracer.Phase.Dispatch,
+										dispatchStart, -1);
 							}
 						}
 					}
@@ -495,18 +550,22 @@ class WebSession {
 					}
 					if (!(signalE != null)) {
 						if (this.getType() == EntryPointType.WidgetSet) {
-							logger
-									.error(new StringWriter()
-											.append(
-													"bogus request: missing signal, discarding")
-											.toString());
+							if (logger.isErrorEnabled()) {
+								logger
+										.error(new StringWriter()
+												.append(
+														"bogus request: missing signal, discarding")
+												.toString());
+							}
 							handler.getResponse().flush();
 							handler.setRequest((WebRequest) null,
 									(WebResponse) null);
 							return;
 						}
-						logger.info(new StringWriter().append(
-								"refreshing session").toString());
+						if (logger.isInfoEnabled()) {
+							logger.info(new StringWriter().append(
+									"refreshing session").toString());
+						}
 						this.flushBootStyleResponse();
 						if (handler.getRequest() != null) {
 							this.env_.parameters_ = handler.getRequest()
@@ -528,9 +587,15 @@ class WebSession {
 	public void pushUpdates() {
 		try {
 			this.triggerUpdate_ = false;
+			this.tracedSignal_ = null;
 			if (!(this.app_ != null) || !this.renderer_.isDirty()) {
-				logger.debug(new StringWriter().append(
-						"pushUpdates(): nothing to do").toString());
+				if (logger.isDebugEnabled()) {
+					logger.debug(new StringWriter().append(
+							"pushUpdates(): nothing to do").toString());
+				}
+				return;
+			}
+			if (this.isPushCoalesced()) {
 				return;
 			}
 			this.updatesPending_ = true;
@@ -540,14 +605,21 @@ class WebSession {
 					return;
 				}
 				if (this.asyncResponse_.isWebSocketRequest()) {
+					this.asyncResponse_
+							.setResponseType(WebRequest.ResponseType.Update);
+					this.renderer_.serveResponse(this.asyncResponse_);
+					this.canWriteAsyncResponse_ = false;
+					((WebSocketResponse) this.asyncResponse_).sendMessage();
 				} else {
 					this.asyncResponse_
 							.setResponseType(WebRequest.ResponseType.Update);
+					this.asyncResponse_.deferOutput();
 					this.renderer_.serveResponse(this.asyncResponse_);
 				}
 				this.updatesPending_ = false;
 				if (!this.asyncResponse_.isWebSocketRequest()) {
 					this.asyncResponse_.flush();
+					this.deferWrite(this.asyncResponse_);
 					this.asyncResponse_ = null;
 					this.canWriteAsyncResponse_ = false;
 				}
@@ -559,6 +631,42 @@ class WebSession {
 		}
 	}
 
+	/*
+	 * Postpones a push that follows the previous push within the application's
+	 * coalescing interval, and schedules a single push at the end of the interval.
+	 */
+	private boolean isPushCoalesced() {
+		int interval = this.app_.getUpdateCoalescingInterval();
+		long now = System.nanoTime();
+		if (interval > 0 && this.lastPush_ != 0) {
+			long delay = this.lastPush_ + interval * 1000000L - now;
+			if (delay > 0) {
+				++this.coalescedUpdates_;
+				this.controller_.getMetrics().updateCoalesced();
+				if (!this.pushScheduled_) {
+					this.pushScheduled_ = true;
+					this.controller_.getPushScheduler().schedule(new Runnable() {
+						public void run() {
+							WebSession.this.queuePost(new Runnable() {
+								public void run() {
+									WebSession.this.pushScheduled_ = false;
+									WebSession.this.triggerUpdate_ = true;
+								}
+							}, null);
+						}
+					}, delay, java.util.concurrent.TimeUnit.NANOSECONDS);
+				}
+				return true;
+			}
+		}
+		this.lastPush_ = now;
+		return false;
+	}
+
+	long getCoalescedUpdateCount() {
+		return this.coalescedUpdates_;
+	}
+
 	public void doRecursiveEventLoop() {
 		try {
 			WebSession.Handler handler = WebSession.Handler.getInstance();
@@ -585,8 +693,13 @@ class WebSession {
 			WebSession.Handler prevRecursiveEventLoop = this.recursiveEventLoop_;
 			this.recursiveEventLoop_ = handler;
 			this.newRecursiveEvent_ = false;
-			while (!this.newRecursiveEvent_) {
-				this.recursiveEvent_.awaitUninterruptibly();
+			this.beginWait();
+			try {
+				while (!this.newRecursiveEvent_) {
+					this.recursiveEvent_.awaitUninterruptibly();
+				}
+			} finally {
+				this.endWait();
 			}
 			if (this.state_ == WebSession.State.Dead) {
 				this.recursiveEventLoop_ = null;
@@ -667,9 +780,121 @@ class WebSession {
 
 	public void kill() {
 		this.state_ = WebSession.State.Dead;
+		if (this.mutex_.isHeldByCurrentThread()) {
+			this.bootStyleEvent_.signalAll();
+		}
 		this.isUnlockRecursiveEventLoop();
 	}
 
+	static class PostedFunction {
+		public PostedFunction(Runnable function, Runnable fallBackFunction) {
+			this.function = function;
+			this.fallBackFunction = fallBackFunction;
+		}
+
+		public Runnable function;
+		public Runnable fallBackFunction;
+	}
+
+	/*
+	 * Queues a function (see WtServlet.post()), and schedules the queue to be run
+	 * unless it is already scheduled. This never takes the session lock.
+	 */
+	void queuePost(Runnable function, Runnable fallBackFunction) {
+		this.posted_.add(new WebSession.PostedFunction(function,
+				fallBackFunction));
+		this.schedulePosted();
+	}
+
+	void schedulePosted() {
+		if (this.posted_.isEmpty() || !this.postScheduled_.compareAndSet(false, true)) {
+			return;
+		}
+		this.controller_.getPostExecutor().execute(new Runnable() {
+			public void run() {
+				WebSession.this.runPosted();
+			}
+		});
+	}
+
+	/*
+	 * Runs the queued functions while holding the session lock, and pushes the
+	 * resulting changes. The fall-back functions of a dead session are run after the
+	 * lock has been released.
+	 *
+	 * When another thread holds the session lock (e.g. during a long event), this does
+	 * not wait for it, so that the pool is free for other sessions: the queue is
+	 * scheduled again when that thread releases the lock. A thread that releases the
+	 * lock by waiting on a condition (see beginWait()) only does so shortly after
+	 * scheduling the queue, which is then given a moment to acquire the lock.
+	 */
+	private void runPosted() {
+		boolean locked = this.mutex_.tryLock();
+		if (!locked && this.waiting_.get() > 0) {
+			try {
+				locked = this.mutex_.tryLock(POST_WAIT_TIMEOUT,
+						java.util.concurrent.TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (!locked) {
+			this.postScheduled_.set(false);
+			if (!this.mutex_.isLocked()) {
+				this.schedulePosted();
+			}
+			return;
+		}
+		List<WebSession.PostedFunction> orphaned = new ArrayList<WebSession.PostedFunction>();
+		WebSession.Handler handler = new WebSession.Handler(this, false);
+		try {
+			WebSession.PostedFunction f;
+			while ((f = this.posted_.poll()) != null) {
+				if (this.isDead() || !(this.app_ != null)) {
+					orphaned.add(f);
+					continue;
+				}
+				try {
+					f.function.run();
+				} catch (RuntimeException e) {
+					if (logger.isErrorEnabled()) {
+						logger.error(new StringWriter().append(
+								"Exception in posted function: ").append(
+								e.toString()).toString(), e);
+					}
+				}
+			}
+			if (!this.isDead() && this.app_ != null
+					&& this.app_.isUpdatesEnabled()) {
+				this.triggerUpdate_ = true;
+			}
+		} finally {
+			handler.release();
+			this.postScheduled_.set(false);
+		}
+		for (WebSession.PostedFunction o : orphaned) {
+			if (o.fallBackFunction != null) {
+				o.fallBackFunction.run();
+			}
+		}
+		this.schedulePosted();
+	}
+
+	/*
+	 * Marks the start of a wait on a condition of the session lock (a recursive event
+	 * loop, or a long poll), which releases the lock: the functions that are posted
+	 * meanwhile are run while waiting, rather than when the lock is released by the
+	 * handler.
+	 */
+	private void beginWait() {
+		this.waiting_.incrementAndGet();
+		this.schedulePosted();
+	}
+
+	private void endWait() {
+		this.waiting_.decrementAndGet();
+	}
+
 	public boolean isProgressiveBoot() {
 		return this.progressiveBoot_;
 	}
@@ -1027,8 +1252,10 @@ class WebSession {
 	public void setState(WebSession.State state, int timeout) {
 		if (this.state_ != WebSession.State.Dead) {
 			this.state_ = state;
-			logger.debug(new StringWriter().append("Setting to expire in ")
-					.append(String.valueOf(timeout)).append("s").toString());
+			if (logger.isDebugEnabled()) {
+				logger.debug(new StringWriter().append("Setting to expire in ")
+						.append(String.valueOf(timeout)).append("s").toString());
+			}
 		}
 	}
 
@@ -1090,7 +1317,17 @@ class WebSession {
 				if (this.session_.triggerUpdate_) {
 					this.session_.pushUpdates();
 				}
+				List<WebResponse> writes = null;
+				if (this.session_.getMutex().getHoldCount() == 1) {
+					writes = this.session_.takeDeferredWrites();
+				}
 				this.session_.getMutex().unlock();
+				if (writes != null) {
+					this.session_.writeDeferred(writes);
+				}
+				if (!this.session_.getMutex().isHeldByCurrentThread()) {
+					this.session_.schedulePosted();
+				}
 			}
 			attachThreadToHandler(this.prevHandler_);
 		}
@@ -1129,15 +1366,19 @@ class WebSession {
 				return;
 			}
 			if (session.state_ == WebSession.State.Dead) {
-				logger.warn(new StringWriter().append(
-						"attaching to dead session?").toString());
+				if (logger.isWarnEnabled()) {
+					logger.warn(new StringWriter().append(
+							"attaching to dead session?").toString());
+				}
 			}
 			if (!session.isAttachThreadToLockedHandler()) {
-				logger
-						.warn(new StringWriter()
-								.append(
-										"attachThread(): no thread is holding this application's lock ?")
-								.toString());
+				if (logger.isWarnEnabled()) {
+					logger
+							.warn(new StringWriter()
+									.append(
+											"attachThread(): no thread is holding this application's lock ?")
+									.toString());
+				}
 				WebSession.Handler
 						.attachThreadToHandler(new WebSession.Handler(session,
 								false));
@@ -1197,19 +1438,27 @@ class WebSession {
 			String requestE = request.getParameter("request");
 			if (requestE != null && requestE.equals("ws")
 					&& !request.isWebSocketRequest()) {
-				logger.error(new StringWriter().append(
-						"invalid WebSocket request, ignoring").toString());
-				logger.info(new StringWriter().append("Connection: ").append(
-						request.getHeaderValue("Connection")).toString());
-				logger.info(new StringWriter().append("Upgrade: ").append(
-						request.getHeaderValue("Upgrade")).toString());
-				logger
-						.info(new StringWriter()
-								.append("Sec-WebSocket-Version: ")
-								.append(
-										request
-												.getHeaderValue("Sec-WebSocket-Version"))
-								.toString());
+				if (logger.isErrorEnabled()) {
+					logger.error(new StringWriter().append(
+							"invalid WebSocket request, ignoring").toString());
+				}
+				if (logger.isInfoEnabled()) {
+					logger.info(new StringWriter().append("Connection: ").append(
+							request.getHeaderValue("Connection")).toString());
+				}
+				if (logger.isInfoEnabled()) {
+					logger.info(new StringWriter().append("Upgrade: ").append(
+							request.getHeaderValue("Upgrade")).toString());
+				}
+				if (logger.isInfoEnabled()) {
+					logger
+							.info(new StringWriter()
+									.append("Sec-WebSocket-Version: ")
+									.append(
+											request
+													.getHeaderValue("Sec-WebSocket-Version"))
+									.toString());
+				}
 				handler.getResponse().flush();
 				return;
 			}
@@ -1236,12 +1485,16 @@ class WebSession {
 					&& this.state_ != WebSession.State.JustCreated
 					&& (requestE != null && (requestE.equals("jsupdate") || requestE
 							.equals("resource")))) {
-				logger.debug(new StringWriter().append("CSRF: ").append(
-						wtdE != null ? wtdE : "no wtd").append(" != ").append(
-						this.sessionId_).append(", requestE: ").append(
-						requestE != null ? requestE : "none").toString());
-				logger.warn(new StringWriter().append("secure:").append(
-						"CSRF prevention kicked in.").toString());
+				if (logger.isDebugEnabled()) {
+					logger.debug(new StringWriter().append("CSRF: ").append(
+							wtdE != null ? wtdE : "no wtd").append(" != ").append(
+							this.sessionId_).append(", requestE: ").append(
+							requestE != null ? requestE : "none").toString());
+				}
+				if (logger.isWarnEnabled()) {
+					logger.warn(new StringWriter().append("secure:").append(
+							"CSRF prevention kicked in.").toString());
+				}
 				this.serveError(403, handler, "Forbidden");
 			} else {
 				try {
@@ -1255,22 +1508,26 @@ class WebSession {
 										|| requestE.equals("script")) {
 									handler.getResponse().setResponseType(
 											WebRequest.ResponseType.Update);
-									logger
-											.info(new StringWriter()
-													.append(
-															"signal from dead session, sending reload.")
-													.toString());
+									if (logger.isInfoEnabled()) {
+										logger
+												.info(new StringWriter()
+														.append(
+																"signal from dead session, sending reload.")
+														.toString());
+									}
 									this.renderer_.letReloadJS(handler
 											.getResponse(), true);
 									this.kill();
 									break;
 								} else {
 									if (!requestE.equals("page")) {
-										logger
-												.info(new StringWriter()
-														.append(
-																"not serving this.")
-														.toString());
+										if (logger.isInfoEnabled()) {
+											logger
+													.info(new StringWriter()
+															.append(
+																	"not serving this.")
+															.toString());
+										}
 										handler.getResponse().setContentType(
 												"text/html");
 										handler
@@ -1305,12 +1562,14 @@ class WebSession {
 								} else {
 									if (this.controller_
 											.limitPlainHtmlSessions()) {
-										logger
-												.warn(new StringWriter()
-														.append("secure:")
-														.append(
-																"DoS: plain HTML sessions being limited")
-														.toString());
+										if (logger.isWarnEnabled()) {
+											logger
+													.warn(new StringWriter()
+															.append("secure:")
+															.append(
+																	"DoS: plain HTML sessions being limited")
+															.toString());
+										}
 										if (forcePlain) {
 											this.kill();
 										} else {
@@ -1343,11 +1602,13 @@ class WebSession {
 											.append(
 													"<html><head><title>bhm</title></head><body> </body></html>");
 								} else {
-									logger
-											.info(new StringWriter()
-													.append(
-															"not starting session for resource.")
-													.toString());
+									if (logger.isInfoEnabled()) {
+										logger
+												.info(new StringWriter()
+														.append(
+																"not starting session for resource.")
+														.toString());
+									}
 									handler.getResponse().setContentType(
 											"text/html");
 									handler
@@ -1416,19 +1677,27 @@ class WebSession {
 													(WebRequest) null,
 													(WebResponse) null);
 										} else {
-											int i = 0;
-											final int MAX_TRIES = 1000;
-											while (!(this.app_ != null)
-													&& i < MAX_TRIES) {
-												this.mutex_.unlock();
-												Thread.sleep(5);
-												this.mutex_.lock();
-												++i;
-											}
-											if (i < MAX_TRIES) {
-												this.renderer_
-														.serveLinkedCss(handler
-																.getResponse());
+											++this.bootStyleWaiting_;
+											try {
+												long start = System
+														.nanoTime();
+												long remaining = BOOT_STYLE_TIMEOUT;
+												while (!(this.app_ != null)
+														&& this.state_ != WebSession.State.Dead
+														&& remaining > 0) {
+													remaining = this.bootStyleEvent_
+															.awaitNanos(remaining);
+												}
+												recordBootWait(start);
+												if (this.app_ != null) {
+													this.renderer_
+															.serveLinkedCss(handler
+																	.getResponse());
+												}
+											} finally {
+												--this.bootStyleWaiting_;
+												this.bootStyleEvent_
+														.signalAll();
 											}
 											handler.getResponse().flush();
 											handler.setRequest(
@@ -1475,12 +1744,14 @@ class WebSession {
 										}
 										if (this.controller_
 												.limitPlainHtmlSessions()) {
-											logger
-													.warn(new StringWriter()
-															.append("secure:")
-															.append(
-																	"DoS: plain HTML sessions being limited")
-															.toString());
+											if (logger.isWarnEnabled()) {
+												logger
+														.warn(new StringWriter()
+																.append("secure:")
+																.append(
+																		"DoS: plain HTML sessions being limited")
+																.toString());
+											}
 											this.kill();
 										}
 									} else {
@@ -1539,23 +1810,29 @@ class WebSession {
 						break;
 					}
 					case Dead:
-						logger
-								.info(new StringWriter().append(
-										"request to dead session, ignoring")
-										.toString());
+						if (logger.isInfoEnabled()) {
+							logger
+									.info(new StringWriter().append(
+											"request to dead session, ignoring")
+											.toString());
+						}
 						break;
 					}
 				} catch (WException e) {
-					logger.error(new StringWriter().append("fatal error: ")
-							.append(e.toString()).toString());
+					if (logger.isErrorEnabled()) {
+						logger.error(new StringWriter().append("fatal error: ")
+								.append(e.toString()).toString());
+					}
 					e.printStackTrace();
 					this.kill();
 					if (handler.getResponse() != null) {
 						this.serveError(500, handler, e.toString());
 					}
 				} catch (RuntimeException e) {
-					logger.error(new StringWriter().append("fatal error: ")
-							.append(e.toString()).toString());
+					if (logger.isErrorEnabled()) {
+						logger.error(new StringWriter().append("fatal error: ")
+								.append(e.toString()).toString());
+					}
 					e.printStackTrace();
 					this.kill();
 					if (handler.getResponse() != null) {
@@ -1591,13 +1868,92 @@ class WebSession {
 
 	// public void generateNewSessionId() ;
 	private void handleWebSocketRequest(WebSession.Handler handler) {
+		if (!this.controller_.getConfiguration().webSockets()
+				|| !(this.app_ != null) || this.state_ != State.Loaded) {
+			handler.getResponse().flush();
+			handler.setRequest((WebRequest) null, (WebResponse) null);
+			return;
+		}
+		if (this.asyncResponse_ != null) {
+			this.asyncResponse_.flush();
+			this.asyncResponse_ = null;
+		}
+		this.asyncResponse_ = handler.getResponse();
+		this.canWriteAsyncResponse_ = true;
+		handler.setRequest((WebRequest) null, (WebResponse) null);
+	}
+
+	void handleWebSocketMessage(WebSession.Handler handler,
+			WebRequest.ReadEvent event) throws IOException {
+		switch (event) {
+		case Error:
+			if (this.asyncResponse_ == handler.getResponse()) {
+				this.asyncResponse_ = null;
+				this.canWriteAsyncResponse_ = false;
+			}
+			handler.setRequest((WebRequest) null, (WebResponse) null);
+			break;
+		case PingEvent:
+			if (this.asyncResponse_ != null
+					&& this.asyncResponse_.isWebSocketRequest()
+					&& this.canWriteAsyncResponse_) {
+				this.canWriteAsyncResponse_ = false;
+				this.asyncResponse_.out().append("{}");
+				((WebSocketResponse) this.asyncResponse_).sendMessage();
+			}
+			handler.setRequest((WebRequest) null, (WebResponse) null);
+			break;
+		case MessageEvent:
+			this.handleRequest(handler);
+			if (!this.isDead()) {
+				this.pushUpdates();
+			}
+			break;
+		}
 	}
 
-	private static void handleWebSocketMessage(WebSession session,
-			WebRequest.ReadEvent event) {
+	private void deferWrite(WebResponse response) {
+		this.deferredWrites_.add(response);
+		this.deferredWriteSize_.addAndGet(response.getDeferredOutputSize());
+		this.controller_.getMetrics().pushQueued(
+				response.getDeferredOutputSize());
 	}
 
-	private static void webSocketReady(WebSession session) {
+	private List<WebResponse> takeDeferredWrites() {
+		if (this.deferredWrites_.isEmpty()) {
+			return null;
+		}
+		List<WebResponse> result = this.deferredWrites_;
+		this.deferredWrites_ = new ArrayList<WebResponse>();
+		return result;
+	}
+
+	private void writeDeferred(List<WebResponse> writes) {
+		for (WebResponse response : writes) {
+			int size = response.getDeferredOutputSize();
+			long start = this.traceStart(RequestTracer.Phase.Flush);
+			response.writeDeferredOutput();
+			this.traceEnd(RequestTracer.Phase.Flush, start, size);
+			this.deferredWriteSize_.addAndGet(-size);
+			this.controller_.getMetrics().pushWritten(size);
+		}
+	}
+
+	/**
+	 * Returns the size of the output that has been rendered, but not yet written.
+	 * <p>
+	 * Updates are rendered while holding the session lock, but written to the
+	 * client after it has been released. A large value indicates a slow client.
+	 */
+	public long getPendingOutputSize() {
+		return this.deferredWriteSize_.get();
+	}
+
+	void webSocketReady(WebResponse webSocket) {
+		if (this.asyncResponse_ == webSocket) {
+			this.canWriteAsyncResponse_ = true;
+			this.pushUpdates();
+		}
 	}
 
 	private void checkTimers() {
@@ -1649,6 +2005,8 @@ class WebSession {
 	private WebResponse asyncResponse_;
 	private WebResponse bootStyleResponse_;
 	private boolean canWriteAsyncResponse_;
+	private List<WebResponse> deferredWrites_;
+	private java.util.concurrent.atomic.AtomicLong deferredWriteSize_;
 	private int pollRequestsIgnored_;
 	private boolean progressiveBoot_;
 	private WebRequest deferredRequest_;
@@ -1658,6 +2016,21 @@ class WebSession {
 	private boolean newRecursiveEvent_;
 	private java.util.concurrent.locks.Condition updatesPendingEvent_;
 	private boolean updatesPending_;
+	private java.util.concurrent.locks.Condition bootStyleEvent_;
+	private int bootStyleWaiting_;
+	private RequestTracer tracer_;
+	private String tracedSignal_;
+	private static final long BOOT_STYLE_TIMEOUT = 5000000000L;
+	private static final long SCRIPT_STYLE_TIMEOUT = 1000000000L;
+	private static final long POST_WAIT_TIMEOUT = 100;
+	private static java.util.concurrent.atomic.AtomicLong bootWaitCount_ = new java.util.concurrent.atomic.AtomicLong();
+	private static java.util.concurrent.atomic.AtomicLong bootWaitTime_ = new java.util.concurrent.atomic.AtomicLong();
+	private java.util.Queue<WebSession.PostedFunction> posted_;
+	private java.util.concurrent.atomic.AtomicBoolean postScheduled_;
+	private java.util.concurrent.atomic.AtomicInteger waiting_;
+	private long lastPush_;
+	private boolean pushScheduled_;
+	private long coalescedUpdates_;
 	private boolean triggerUpdate_;
 	private WEnvironment embeddedEnv_;
 	private WEnvironment env_;
@@ -1680,8 +2053,10 @@ class WebSession {
 			}
 		}
 		if (!(result != null) && checkExposed) {
-			logger.error(new StringWriter().append("decodeSignal(): signal '")
-					.append(signalId).append("' not exposed").toString());
+			if (logger.isErrorEnabled()) {
+				logger.error(new StringWriter().append("decodeSignal(): signal '")
+						.append(signalId).append("' not exposed").toString());
+			}
 		}
 		return result;
 	}
@@ -1699,9 +2074,11 @@ class WebSession {
 			}
 		}
 		if (!(result != null) && checkExposed) {
-			logger.error(new StringWriter().append("decodeSignal(): signal '")
-					.append(objectId).append('.').append(name).append(
-							"' not exposed").toString());
+			if (logger.isErrorEnabled()) {
+				logger.error(new StringWriter().append("decodeSignal(): signal '")
+						.append(objectId).append('.').append(name).append(
+								"' not exposed").toString());
+			}
 		}
 		return result;
 	}
@@ -1718,9 +2095,11 @@ class WebSession {
 				try {
 					this.checkTimers();
 				} catch (RuntimeException e) {
-					logger.error(new StringWriter().append(
-							"Exception while triggering timers").append(
-							e.toString()).toString());
+					if (logger.isErrorEnabled()) {
+						logger.error(new StringWriter().append(
+								"Exception while triggering timers").append(
+								e.toString()).toString());
+					}
 					throw e;
 				}
 			}
@@ -1758,19 +2137,38 @@ class WebSession {
 		if (!handler.getRequest().isWebSocketMessage()) {
 			if (handler.getResponse().getResponseType() == WebRequest.ResponseType.Script
 					&& !(handler.getRequest().getParameter("skeleton") != null)) {
-				this.mutex_.unlock();
-				try {
-					Thread.sleep(1);
-				} catch (InterruptedException e) {
-				}
-				this.mutex_.lock();
+				this.waitForBootStyle();
 			}
 			this.renderer_.serveResponse(handler.getResponse());
 		}
+		long start = this.traceStart(RequestTracer.Phase.Flush);
 		handler.getResponse().flush();
+		this.traceEnd(RequestTracer.Phase.Flush, start, -1);
 		handler.setRequest((WebRequest) null, (WebResponse) null);
 	}
 
+	/*
+	 * Signals the start of a phase to the request tracer, and returns its start time.
+	 */
+	long traceStart(RequestTracer.Phase phase) {
+		if (this.tracer_ == null) {
+			return 0;
+		}
+		this.tracer_.phaseStarted(phase, this.sessionId_, this.tracedSignal_);
+		return System.nanoTime();
+	}
+
+	/*
+	 * Signals the end of a phase (started with traceStart()) to the request tracer.
+	 */
+	void traceEnd(RequestTracer.Phase phase, long start, long size) {
+		if (this.tracer_ == null) {
+			return;
+		}
+		this.tracer_.phaseEnded(phase, this.sessionId_, this.tracedSignal_,
+				System.nanoTime() - start, size);
+	}
+
 	enum SignalKind {
 		LearnedStateless(0), AutoLearnStateless(1), Dynamic(2);
 
@@ -1857,8 +2255,10 @@ class WebSession {
 				return;
 			}
 			this.renderer_.setRendered(true);
-			logger.debug(new StringWriter().append("signal: ").append(signalE)
-					.toString());
+			if (logger.isDebugEnabled()) {
+				logger.debug(new StringWriter().append("signal: ").append(signalE)
+						.toString());
+			}
 			if (signalE.equals("none") || signalE.equals("load")) {
 				if (signalE.equals("load")) {
 					if (this.getType() == EntryPointType.WidgetSet) {
@@ -1940,8 +2340,10 @@ class WebSession {
 					selectionEnd = Integer.parseInt(selEnd);
 				}
 			} catch (NumberFormatException ee) {
-				logger.error(new StringWriter().append(
-						"Could not lexical cast selection range").toString());
+				if (logger.isErrorEnabled()) {
+					logger.error(new StringWriter().append(
+							"Could not lexical cast selection range").toString());
+				}
 			}
 			this.app_.setFocus(focus, selectionStart, selectionEnd);
 		} else {
@@ -2040,9 +2442,62 @@ class WebSession {
 		this.pagePathInfo_ = request.getPathInfo();
 	}
 
+	/*
+	 * The boot style request waits for the application to be created (by the
+	 * script request): the script must not be rendered before the style sheet has
+	 * been served, since rendering the script consumes the style changes.
+	 */
+	private void waitForBootStyle() {
+		if (this.bootStyleWaiting_ == 0) {
+			return;
+		}
+		long start = System.nanoTime();
+		long remaining = SCRIPT_STYLE_TIMEOUT;
+		this.bootStyleEvent_.signalAll();
+		try {
+			while (this.bootStyleWaiting_ > 0 && remaining > 0) {
+				remaining = this.bootStyleEvent_.awaitNanos(remaining);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		recordBootWait(start);
+	}
+
+	private static void recordBootWait(long start) {
+		bootWaitCount_.incrementAndGet();
+		bootWaitTime_.addAndGet(System.nanoTime() - start);
+	}
+
+	/**
+	 * Returns the number of times a request waited for another request during
+	 * the bootstrap of a session.
+	 * <p>
+	 * The style sheet request of a new session waits until the application has
+	 * been created, and the script request in turn waits until the style sheet
+	 * has been served.
+	 */
+	static long getBootWaitCount() {
+		return bootWaitCount_.get();
+	}
+
+	/**
+	 * Returns the total time (in nanoseconds) requests waited during the
+	 * bootstrap of a session.
+	 * <p>
+	 * 
+	 * @see WebSession#getBootWaitCount()
+	 */
+	static long getBootWaitTime() {
+		return bootWaitTime_.get();
+	}
+
 	private boolean start(WebResponse response) {
 		try {
 			this.app_ = this.controller_.doCreateApplication(this);
+			if (this.mutex_.isHeldByCurrentThread()) {
+				this.bootStyleEvent_.signalAll();
+			}
 			if (!this.app_.internalPathValid_) {
 				if (response.getResponseType() == WebRequest.ResponseType.Page) {
 					response.setStatus(404);
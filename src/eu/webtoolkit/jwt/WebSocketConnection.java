@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpSession;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.webtoolkit.jwt.servlet.WebRequest;
+
+/**
+ * A WebSocket connection to a JWt session.
+ * <p>
+ * When WebSockets are enabled (see {@link Configuration#setWebSockets(boolean)}), the browser
+ * opens a WebSocket connection to the session URL (with <code>request=ws</code>), over which it
+ * sends events, and over which the session sends its updates (including server push updates).
+ * <p>
+ * JWt does not depend on a particular WebSocket API. Instead, an endpoint for the WebSocket API of
+ * the servlet container (e.g. a JSR-356 endpoint) adapts its connections to this class:
+ * <ul>
+ * <li>implement {@link #sendMessage(String)} and {@link #close()}</li>
+ * <li>when the connection is opened, call {@link #open(HttpSession, Map, Map, boolean)} with the
+ * HTTP session of the handshake request, and close the connection if it is not accepted</li>
+ * <li>pass every received text message to {@link #messageReceived(String)}</li>
+ * <li>call {@link #messageSent()} when a message has been written</li>
+ * <li>call {@link #closed()} when the connection is closed or fails</li>
+ * </ul>
+ * <p>
+ * Messages are sent one at a time: a message is only passed to {@link #sendMessage(String)} after the
+ * previous one has been written. Updates are not rendered while a message is being written, which
+ * throttles the updates pushed to slow clients.
+ */
+public abstract class WebSocketConnection {
+	private static Logger logger = LoggerFactory.getLogger(WebSocketConnection.class);
+
+	private HttpSession httpSession;
+	private WebSession session;
+	private WebSocketResponse response;
+	private Map<String, String> headers;
+	private boolean secure;
+	private int sessionTimeout;
+	private AtomicInteger pendingMessages = new AtomicInteger();
+	private LinkedList<String> sendQueue = new LinkedList<String>();
+	private boolean sending;
+	private volatile boolean terminated;
+
+	/**
+	 * Sends a text message.
+	 * <p>
+	 * This should not block: when the message has been written, {@link #messageSent()} must be
+	 * called. Only a single message is sent at a time.
+	 *
+	 * @param message the message
+	 */
+	protected abstract void sendMessage(String message);
+
+	/**
+	 * Closes the connection.
+	 * <p>
+	 * This is called when the session no longer accepts the connection.
+	 */
+	public abstract void close();
+
+	/**
+	 * Attaches the connection to a session.
+	 * <p>
+	 * The connection is accepted when the HTTP session has a JWt session that has been loaded,
+	 * and the <code>wtd</code> parameter matches its session ID. If the connection is not accepted,
+	 * it should be closed.
+	 *
+	 * @param httpSession the HTTP session of the handshake request.
+	 * @param parameters the query parameters of the handshake request.
+	 * @param headers the headers of the handshake request.
+	 * @param secure whether the connection is secure (wss).
+	 * @return whether the connection was accepted.
+	 */
+	public boolean open(HttpSession httpSession, Map<String, String[]> parameters, Map<String, String> headers, boolean secure) {
+		if (httpSession == null)
+			return false;
+
+		WebSession session = WtServlet.getBoundSession(httpSession);
+		String[] wtd = parameters.get("wtd");
+		if (session == null || wtd == null || wtd.length == 0 || !session.getSessionId().equals(wtd[0]))
+			return false;
+
+		this.httpSession = httpSession;
+		this.session = session;
+		this.headers = headers;
+		this.secure = secure;
+		this.sessionTimeout = httpSession.getMaxInactiveInterval();
+		this.response = new WebSocketResponse(this, false);
+
+		WebSession.Handler handler = new WebSession.Handler(session, new WebSocketRequest(parameters, headers, secure, false),
+				response);
+		try {
+			session.handleRequest(handler);
+		} catch (IOException e) {
+			e.printStackTrace();
+			terminate();
+		} finally {
+			handler.release();
+		}
+
+		session.getController().expireDeadSession(httpSession, session);
+
+		return !terminated;
+	}
+
+	/**
+	 * Handles a received text message.
+	 * <p>
+	 * Messages contain an (url-encoded) event, or a ping. This blocks while the event is
+	 * being handled by the session.
+	 *
+	 * @param message the message.
+	 */
+	public void messageReceived(String message) {
+		if (session == null || terminated)
+			return;
+
+		keepAlive();
+
+		Map<String, String[]> parameters = parseMessage(message);
+		String[] signal = parameters.get("signal");
+		WebRequest.ReadEvent event = signal != null && signal[0].equals("ping") ? WebRequest.ReadEvent.PingEvent
+				: WebRequest.ReadEvent.MessageEvent;
+
+		/* A message is handled as an Ajax update for this session */
+		parameters.put("wtd", new String[] { session.getSessionId() });
+		parameters.put("request", new String[] { "jsupdate" });
+
+		pendingMessages.incrementAndGet();
+		WebSession.Handler handler = new WebSession.Handler(session, new WebSocketRequest(parameters, headers, secure, true),
+				new WebSocketResponse(this, true));
+		try {
+			pendingMessages.decrementAndGet();
+			session.handleWebSocketMessage(handler, event);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			handler.release();
+		}
+
+		session.getController().expireDeadSession(httpSession, session);
+	}
+
+	/**
+	 * Notifies that a message has been written.
+	 */
+	public void messageSent() {
+		String next;
+		synchronized (sendQueue) {
+			next = sendQueue.poll();
+			if (next == null)
+				sending = false;
+		}
+
+		if (next != null)
+			sendMessage(next);
+		else if (session != null && !terminated) {
+			WebSession.Handler handler = new WebSession.Handler(session, true);
+			try {
+				session.webSocketReady(response);
+			} finally {
+				handler.release();
+			}
+		}
+	}
+
+	/**
+	 * Notifies that the connection was closed.
+	 */
+	public void closed() {
+		if (terminated || session == null) {
+			terminated = true;
+			return;
+		}
+
+		terminated = true;
+
+		WebSession.Handler handler = new WebSession.Handler(session, (WebRequest) null, response);
+		try {
+			session.handleWebSocketMessage(handler, WebRequest.ReadEvent.Error);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			handler.release();
+		}
+
+		logger.debug("WebSocket closed: " + session.getSessionId());
+	}
+
+	void send(String message) {
+		if (terminated)
+			return;
+
+		synchronized (sendQueue) {
+			if (sending) {
+				sendQueue.add(message);
+				return;
+			}
+			sending = true;
+		}
+
+		sendMessage(message);
+	}
+
+	void terminate() {
+		if (!terminated) {
+			terminated = true;
+			close();
+		}
+	}
+
+	boolean isMessagePending() {
+		return pendingMessages.get() != 0;
+	}
+
+	/*
+	 * The servlet container does not see the messages on a WebSocket, and would expire
+	 * the HTTP session while the connection is in use: extend its lifetime instead.
+	 */
+	private void keepAlive() {
+		if (sessionTimeout <= 0)
+			return;
+
+		try {
+			long idle = (System.currentTimeMillis() - httpSession.getLastAccessedTime()) / 1000;
+			httpSession.setMaxInactiveInterval(sessionTimeout + (int) idle);
+		} catch (IllegalStateException e) {
+			// session was invalidated
+		}
+	}
+
+	private static Map<String, String[]> parseMessage(String message) {
+		Map<String, String[]> result = new HashMap<String, String[]>();
+
+		for (String pair : message.split("&")) {
+			if (pair.length() == 0)
+				continue;
+
+			int eq = pair.indexOf('=');
+			String name = decode(eq == -1 ? pair : pair.substring(0, eq));
+			String value = eq == -1 ? "" : decode(pair.substring(eq + 1));
+
+			String[] v = result.get(name);
+			if (v == null)
+				v = new String[] { value };
+			else {
+				String[] newv = new String[v.length + 1];
+				System.arraycopy(v, 0, newv, 0, v.length);
+				newv[v.length] = value;
+				v = newv;
+			}
+			result.put(name, v);
+		}
+
+		return result;
+	}
+
+	private static String decode(String s) {
+		try {
+			return URLDecoder.decode(s, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalArgumentException e) {
+			return s;
+		}
+	}
+}
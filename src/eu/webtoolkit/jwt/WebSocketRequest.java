@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import eu.webtoolkit.jwt.servlet.UploadedFile;
+import eu.webtoolkit.jwt.servlet.WebRequest;
+
+/*
+ * The request for a WebSocket connection, or for a single message received on it.
+ *
+ * The headers and scheme are those of the handshake request.
+ */
+class WebSocketRequest extends WebRequest {
+	private Map<String, String> headers;
+	private boolean secure;
+	private boolean message;
+
+	WebSocketRequest(Map<String, String[]> parameters, Map<String, String> headers, boolean secure, boolean message) {
+		super(parameters, new HashMap<String, List<UploadedFile>>());
+
+		this.headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+		if (headers != null)
+			this.headers.putAll(headers);
+		this.secure = secure;
+		this.message = message;
+	}
+
+	@Override
+	public String getMethod() {
+		return message ? "POST" : "GET";
+	}
+
+	@Override
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	@Override
+	public String getScheme() {
+		return secure ? "https" : "http";
+	}
+
+	@Override
+	public boolean isSecure() {
+		return secure;
+	}
+
+	@Override
+	public String getRemoteAddr() {
+		return "";
+	}
+
+	@Override
+	public String getPathInfo() {
+		return "";
+	}
+
+	@Override
+	public String getScriptName() {
+		return "";
+	}
+
+	@Override
+	public boolean isWebSocketRequest() {
+		return !message;
+	}
+
+	@Override
+	public boolean isWebSocketMessage() {
+		return message;
+	}
+}
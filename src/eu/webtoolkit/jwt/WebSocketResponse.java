@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+import eu.webtoolkit.jwt.servlet.WebResponse;
+
+/*
+ * The response for a WebSocket connection, or for a single message received on it.
+ *
+ * Output is buffered and sent as a single text message. For the connection itself
+ * (which is kept by the session to push updates), flush() means that the response is
+ * done, and thus closes the connection.
+ */
+class WebSocketResponse extends WebResponse {
+	private WebSocketConnection connection;
+	private boolean message;
+	private ByteArrayOutputStream buffer;
+
+	WebSocketResponse(WebSocketConnection connection, boolean message) {
+		this(connection, message, new ByteArrayOutputStream());
+	}
+
+	private WebSocketResponse(WebSocketConnection connection, boolean message, ByteArrayOutputStream buffer) {
+		super(buffer);
+
+		this.connection = connection;
+		this.message = message;
+		this.buffer = buffer;
+	}
+
+	WebSocketConnection getConnection() {
+		return connection;
+	}
+
+	/*
+	 * Sends the buffered output as a message.
+	 */
+	void sendMessage() {
+		try {
+			out().flush();
+			String text = buffer.toString("UTF-8");
+			buffer.reset();
+			connection.send(text);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void flush() {
+		if (message) {
+			try {
+				out().flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			if (buffer.size() != 0)
+				sendMessage();
+		} else
+			connection.terminate();
+	}
+
+	@Override
+	public boolean isWebSocketRequest() {
+		return !message;
+	}
+
+	@Override
+	public boolean isWebSocketMessage() {
+		return message;
+	}
+
+	@Override
+	public boolean isWebSocketMessagePending() {
+		return connection.isMessagePending();
+	}
+}
@@ -6,9 +6,7 @@
 package eu.webtoolkit.jwt;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -18,6 +16,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -31,12 +36,12 @@ import javax.servlet.http.HttpSessionBindingListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import eu.webtoolkit.jwt.servlet.UploadChunk;
 import eu.webtoolkit.jwt.servlet.WebRequest;
 import eu.webtoolkit.jwt.servlet.WebResponse;
 import eu.webtoolkit.jwt.servlet.WebRequest.ProgressListener;
 import eu.webtoolkit.jwt.utils.JarUtils;
 import eu.webtoolkit.jwt.utils.MathUtils;
-import eu.webtoolkit.jwt.utils.StreamUtils;
 
 /**
  * The abstract JWt servlet class.
@@ -69,6 +74,8 @@ public abstract class WtServlet extends HttpServlet {
 			if (app != null)
 				app.destroy();
 			session.destruct();
+			session.getController().removeSession(session);
+			UploadChunk.discardSession(arg0.getSession());
 		}
 	}
 	
@@ -90,6 +97,16 @@ public abstract class WtServlet extends HttpServlet {
 	private static final Map<String, String> mimeTypes = new HashMap<String, String>();
 	
 	private List<WResource> staticResources = new ArrayList<WResource>();
+	private volatile StaticResourceRouter staticResourceRouter = new StaticResourceRouter(staticResources);
+	private StaticResourceCache staticResourceCache;
+	private BotPageCache botPageCache;
+	private volatile RequestExecutor requestExecutor;
+	private AdmissionControl admissionControl;
+	private Metrics metrics;
+	private volatile boolean requestExecutorCreated = false;
+	private Map<String, WebSession> liveSessions = new ConcurrentHashMap<String, WebSession>();
+	private volatile ExecutorService postExecutor;
+	private volatile ScheduledExecutorService pushScheduler;
 
 	static final String Boot_html;
 	static final String Plain_html;
@@ -119,6 +136,8 @@ public abstract class WtServlet extends HttpServlet {
 				{ "html", "text/html" },
 				{ "jpg", "image/jpeg" },
 				{ "png", "image/png" },
+				{ "ico", "image/x-icon" },
+				{ "svg", "image/svg+xml" },
 				{ "js", "text/javascript" } 
 			};
 
@@ -152,6 +171,8 @@ public abstract class WtServlet extends HttpServlet {
 		};
 		
 		this.configuration = new Configuration();
+		this.admissionControl = new AdmissionControl(this.configuration);
+		this.metrics = new Metrics(this);
 		
 		redirectSecret_ = MathUtils.randomId(32);
 		
@@ -169,39 +190,280 @@ public abstract class WtServlet extends HttpServlet {
 		super.init(config);
 		
 		String configFile = this.getInitParameter("jwt-config-file");
-		if (configFile != null)
+		if (configFile != null) {
 			this.configuration = new Configuration(new File(configFile));
+			this.admissionControl = new AdmissionControl(this.configuration);
+		}
 		
 		servletApi = ServletInit.getInstance(config.getServletContext()).getServletApi();
+
+		staticResourceCache = new StaticResourceCache(configuration.getStaticResourceCacheSize());
+		botPageCache = new BotPageCache(configuration);
+
+		metrics.register(config.getServletContext().getContextPath(), config.getServletName());
+	}
+
+	/**
+	 * Releases the resources held by the servlet.
+	 * <p>
+	 * If you want to override this function, make sure to call the super function.
+	 */
+	@Override
+	public void destroy() {
+		synchronized (this) {
+			if (requestExecutor != null)
+				requestExecutor.shutdown();
+			requestExecutor = null;
+
+			if (postExecutor != null)
+				postExecutor.shutdown();
+			postExecutor = null;
+
+			if (pushScheduler != null)
+				pushScheduler.shutdown();
+			pushScheduler = null;
+		}
+
+		metrics.unregister();
+
+		super.destroy();
+	}
+
+	/*
+	 * Returns the executor for processing requests, or null if they are processed on
+	 * the servlet container's pool.
+	 *
+	 * This is created on first use, since the configuration may still be changed after
+	 * init(). This is called for every request: only its creation is synchronized.
+	 */
+	RequestExecutor getRequestExecutor() {
+		if (!requestExecutorCreated) {
+			synchronized (this) {
+				if (!requestExecutorCreated) {
+					requestExecutor = RequestExecutor.create(configuration);
+					requestExecutorCreated = true;
+				}
+			}
+		}
+
+		return requestExecutor;
+	}
+
+	/*
+	 * Returns the executor which runs the functions posted to sessions, creating it on
+	 * first use.
+	 */
+	ExecutorService getPostExecutor() {
+		ExecutorService result = postExecutor;
+		if (result == null) {
+			synchronized (this) {
+				result = postExecutor;
+				if (result == null) {
+					int threads = configuration.getPostThreads();
+					if (threads <= 0)
+						threads = Runtime.getRuntime().availableProcessors();
+
+					ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+							new LinkedBlockingQueue<Runnable>(), new RequestExecutor.NamedThreadFactory("jwt-post"));
+					pool.allowCoreThreadTimeOut(true);
+					result = postExecutor = pool;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/*
+	 * Returns the timer for postponed pushes (see WApplication#setUpdateCoalescingInterval()),
+	 * creating it on first use.
+	 */
+	ScheduledExecutorService getPushScheduler() {
+		ScheduledExecutorService result = pushScheduler;
+		if (result == null) {
+			synchronized (this) {
+				result = pushScheduler;
+				if (result == null)
+					result = pushScheduler = new ScheduledThreadPoolExecutor(1,
+							new RequestExecutor.NamedThreadFactory("jwt-push"));
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Posts a function to a session.
+	 * <p>
+	 * The function is queued, and run later by a thread of JWt while holding the
+	 * session's lock, as if it were an event handler: {@link WApplication#getInstance()}
+	 * returns the session's application, and changes to the widget tree are pushed to
+	 * the client afterwards (if server push is enabled, see
+	 * {@link WApplication#enableUpdates(boolean)}). Functions posted to the same session
+	 * are run in order.
+	 * <p>
+	 * Unlike {@link WApplication#getUpdateLock()}, this never blocks the calling thread,
+	 * which makes it suitable for e.g. the consumer of a message bus.
+	 * <p>
+	 * When the session does not exist (anymore), or is terminated before the function
+	 * could be run, <code>fallBackFunction</code> is run instead (if not <code>null</code>),
+	 * without holding a session lock.
+	 * 
+	 * @param sessionId the session ID (see {@link WApplication#getSessionId()}).
+	 * @param function the function to run within the session.
+	 * @param fallBackFunction the function to run when the session is gone, or <code>null</code>.
+	 * @return whether the function was posted, i.e. whether the session exists.
+	 */
+	public boolean post(String sessionId, Runnable function, Runnable fallBackFunction) {
+		WebSession session = liveSessions.get(sessionId);
+
+		if (session == null || session.isDead()) {
+			if (fallBackFunction != null)
+				fallBackFunction.run();
+			return false;
+		}
+
+		session.queuePost(function, fallBackFunction);
+		return true;
+	}
+
+	/**
+	 * Posts a function to a session.
+	 * <p>
+	 * Calls {@link #post(String, Runnable, Runnable) post(sessionId, function, null)}.
+	 */
+	public boolean post(String sessionId, Runnable function) {
+		return post(sessionId, function, null);
+	}
+
+	/**
+	 * Posts a function to the session of an application.
+	 * <p>
+	 * Calls {@link #post(String, Runnable, Runnable) post(app.getSessionId(), function, null)}.
+	 */
+	public boolean post(WApplication app, Runnable function) {
+		return post(app.getSessionId(), function, null);
+	}
+
+	/**
+	 * Broadcasts a function to a selection of sessions.
+	 * <p>
+	 * The function is posted to every live session (see {@link #post(String, Runnable, Runnable)}),
+	 * and runs within each session that is accepted by the <code>filter</code>. Sessions run
+	 * the function in parallel, on the pool configured with
+	 * {@link Configuration#setPostThreads(int)}. A session which is busy does not hold up
+	 * this pool: it runs the function when it is done with its current work.
+	 * <p>
+	 * This returns immediately, with an object that tracks the outcome per session.
+	 * 
+	 * @param function the function to run within each session.
+	 * @param filter the filter that selects the sessions, or <code>null</code> to select all sessions.
+	 * @return the progress of the broadcast.
+	 */
+	public Broadcast broadcast(Runnable function, Broadcast.Filter filter) {
+		List<WebSession> sessions = new ArrayList<WebSession>(liveSessions.values());
+		Broadcast result = new Broadcast(function, filter, sessions.size());
+
+		for (WebSession session : sessions) {
+			Runnable fallBack = result.getFallBackFunction();
+			if (session.isDead())
+				fallBack.run();
+			else
+				session.queuePost(result.getSessionFunction(), fallBack);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Broadcasts a function to all sessions.
+	 * <p>
+	 * Calls {@link #broadcast(Runnable, Broadcast.Filter) broadcast(function, null)}.
+	 */
+	public Broadcast broadcast(Runnable function) {
+		return broadcast(function, null);
+	}
+
+	/**
+	 * Returns the number of requests waiting for a thread.
+	 * <p>
+	 * This is always 0 when requests are processed on the servlet container's pool.
+	 * 
+	 * @see Configuration#setRequestThreads(int)
+	 */
+	public int getRequestQueueDepth() {
+		RequestExecutor executor = getRequestExecutor();
+		return executor != null ? executor.getQueueDepth() : 0;
+	}
+
+	/**
+	 * Returns the total time, in nanoseconds, that requests waited for a thread.
+	 * <p>
+	 * Together with {@link #getRequestsExecuted()}, this gives the average wait time.
+	 * This is always 0 when requests are processed on the servlet container's pool.
+	 */
+	public long getRequestWaitTime() {
+		RequestExecutor executor = getRequestExecutor();
+		return executor != null ? executor.getWaitTime() : 0;
+	}
+
+	/**
+	 * Returns the number of requests that have been processed by the request executor.
+	 * 
+	 * @see #getRequestWaitTime()
+	 */
+	public long getRequestsExecuted() {
+		RequestExecutor executor = getRequestExecutor();
+		return executor != null ? executor.getExecutedCount() : 0;
+	}
+
+	/**
+	 * Returns the number of requests that were refused because the queue was full.
+	 * 
+	 * @see Configuration#setRequestQueueSize(int)
+	 */
+	public long getRequestsRejected() {
+		RequestExecutor executor = getRequestExecutor();
+		return executor != null ? executor.getRejectedCount() : 0;
 	}
 
 	void handleRequest(final HttpServletRequest request, final HttpServletResponse response) {
 		String pathInfo = WebRequest.computePathInfo(request);
 		String resourcePath = configuration.getProperty(WApplication.RESOURCES_URL);
 		
-		if (pathInfo !=null) {
-			String scriptName = WebRequest.computeScriptName(request);
-			
-			for (WResource staticResource : staticResources) {
-				String staticResourcePath = null;
-				if (!staticResource.getInternalPath().startsWith("/"))
-					staticResourcePath = scriptName + staticResource.getInternalPath();
-				else
-					staticResourcePath = staticResource.getInternalPath();
-				
-				if ((scriptName + pathInfo).equals(staticResourcePath)) {
-					try {
-						WebRequest webRequest = new WebRequest(request, progressListener);
-						WebResponse webResponse = new WebResponse(response, webRequest);
-						staticResource.handle(webRequest, webResponse);
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
-					return;
+		if (pathInfo != null) {
+			WResource staticResource = staticResourceRouter.route(WebRequest.computeScriptName(request), pathInfo);
+
+			if (staticResource != null) {
+				try {
+					WebRequest webRequest = new WebRequest(request, progressListener);
+					WebResponse webResponse = new WebResponse(response, webRequest);
+					staticResource.handle(webRequest, webResponse);
+				} catch (IOException e) {
+					e.printStackTrace();
 				}
+				return;
 			}
 		}
 
+		if (JavaScriptPreambleBundle.isRequest(request)) {
+			try {
+				JavaScriptPreambleBundle.serve(request, response);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
+		if (ScriptSkeletonCache.isRequest(request)) {
+			try {
+				ScriptSkeletonCache.serve(request, response);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
 		if (pathInfo != null && (pathInfo.startsWith(resourcePath) || pathInfo.equals(configuration.getFavicon()))) {
 			logger.debug("serving static file: " + pathInfo);
 
@@ -215,22 +477,16 @@ public abstract class WtServlet extends HttpServlet {
 
 			fileName += pathInfo;
 			try {
-				InputStream s = getResourceStream(fileName);
-				if (s != null) {
-					String suffix = fileName.substring(fileName.lastIndexOf('.') + 1);
-					String mimeType = mimeTypes.get(suffix);
-					if (mimeType != null)
-						response.setContentType(mimeType);
-					else
-						response.setContentType("application/octet-stream");
-					StreamUtils.copy(s, response.getOutputStream());
-					response.getOutputStream().flush();
-				} else {
+				String suffix = fileName.substring(fileName.lastIndexOf('.') + 1);
+				String mimeType = mimeTypes.get(suffix);
+				if (mimeType == null)
+					mimeType = "application/octet-stream";
+
+				StaticResourceCache.Entry entry = staticResourceCache.get(fileName, mimeType);
+				if (entry != null)
+					staticResourceCache.serve(entry, request, response);
+				else
 					response.setStatus(404);
-				}
-			} catch (FileNotFoundException e) {
-				response.setStatus(404);
-				e.printStackTrace();
 			} catch (IOException e) {
 				response.setStatus(500);
 				e.printStackTrace();
@@ -239,10 +495,120 @@ public abstract class WtServlet extends HttpServlet {
 			return;
 		}
 
-		WebRequest webRequest = new WebRequest(request, progressListener);
-		WebResponse webResponse = new WebResponse(response, webRequest);
+		HttpServletResponse pageResponse = response;
+		String botPageKey = botPageCache.isEnabled() ? botPageCache.getKey(request, configuration) : null;
+		if (botPageKey != null) {
+			try {
+				if (botPageCache.serve(botPageKey, response))
+					return;
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
+
+			pageResponse = botPageCache.record(response, botPageKey, request);
+		}
 
-		servletApi.doHandleRequest(this, webRequest, webResponse);
+		if (!admissionControl.enterRequest()) {
+			logger.debug("Too many concurrent requests, refusing request");
+			rejectRequest(response);
+			return;
+		}
+
+		boolean dispatched = false;
+		try {
+			WebRequest webRequest = new WebRequest(request, progressListener, getConfiguration());
+			WebResponse webResponse = new WebResponse(pageResponse, webRequest);
+
+			servletApi.doHandleRequest(this, webRequest, webResponse);
+			dispatched = true;
+		} finally {
+			if (!dispatched)
+				admissionControl.exitRequest();
+		}
+	}
+
+	/*
+	 * Called when a request that was dispatched to doHandleRequest() is not handled
+	 * after all, because it was refused by the request executor.
+	 */
+	void requestRefused() {
+		admissionControl.exitRequest();
+	}
+
+	private void rejectRequest(HttpServletResponse response) {
+		try {
+			admissionControl.reject(response);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Returns the number of sessions.
+	 * 
+	 * @see Configuration#setMaxSessions(int)
+	 */
+	public synchronized int getSessionCount() {
+		return sessions;
+	}
+
+	/**
+	 * Returns the number of sessions which use Ajax.
+	 */
+	public synchronized int getAjaxSessionCount() {
+		return ajaxSessions;
+	}
+
+	/**
+	 * Returns the runtime metrics of this servlet.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the number of requests that are currently being processed.
+	 * 
+	 * @see Configuration#setMaxConcurrentRequests(int)
+	 */
+	public int getRequestsInFlight() {
+		return admissionControl.getRequestsInFlight();
+	}
+
+	/**
+	 * Returns the number of requests that were admitted for processing.
+	 */
+	public long getAdmittedRequests() {
+		return admissionControl.getAdmittedRequests();
+	}
+
+	/**
+	 * Returns the number of requests that were refused because too many requests were
+	 * being processed.
+	 * 
+	 * @see Configuration#setMaxConcurrentRequests(int)
+	 */
+	public long getRejectedRequests() {
+		return admissionControl.getRejectedRequests();
+	}
+
+	/**
+	 * Returns the number of sessions that were admitted.
+	 */
+	public long getAdmittedSessions() {
+		return admissionControl.getAdmittedSessions();
+	}
+
+	/**
+	 * Returns the number of requests that were refused because they would have created
+	 * a session beyond the maximum number or rate of sessions.
+	 * 
+	 * @see Configuration#setMaxSessions(int)
+	 * @see Configuration#setMaxSessionRate(double)
+	 */
+	public long getRejectedSessions() {
+		return admissionControl.getRejectedSessions();
 	}
 
 	/**
@@ -305,28 +671,48 @@ public abstract class WtServlet extends HttpServlet {
 		++ajaxSessions;
 	}
 
-	synchronized int removeSession(WebSession session) {
-		if (session.getEnv().hasAjax())
-			--ajaxSessions;
-		--sessions;
-		return sessions;
+	int removeSession(WebSession session) {
+		liveSessions.remove(session.getSessionId());
+
+		int result;
+		synchronized (this) {
+			if (session.getEnv().hasAjax())
+				--ajaxSessions;
+			result = --sessions;
+		}
+
+		metrics.sessionDestroyed();
+		return result;
 	}
 
 	/*
 	 * Actual request handling, may be within an async call depending on the servlet API.
 	 */
-	void doHandleRequest(WebRequest request, WebResponse response) {		
-		HttpSession jsession = request.getSession();
-		BoundSession bsession = (BoundSession) jsession.getAttribute(WtServlet.WT_WEBSESSION_ID);
-		WebSession wsession = null;
-
-		if (bsession != null)
-			wsession = bsession.getSession();
+	void doHandleRequest(WebRequest request, WebResponse response) {
+		try {
+			doHandleAdmittedRequest(request, response);
+		} finally {
+			request.discardUploadChunk();
+			admissionControl.exitRequest();
+		}
+	}
 
-		getConfiguration().setSessionTimeout(jsession.getMaxInactiveInterval());
+	private void doHandleAdmittedRequest(WebRequest request, WebResponse response) {
+		HttpSession jsession = request.getSession(false);
+		WebSession wsession = jsession != null ? getBoundSession(jsession) : null;
 
 		try {
 			if (wsession == null) {
+				if (!admissionControl.admitSession(getSessionCount())) {
+					logger.debug("Too many sessions, refusing request");
+					rejectRequest(response);
+					response.flush();
+					return;
+				}
+
+				jsession = request.getSession();
+				getConfiguration().setSessionTimeout(jsession.getMaxInactiveInterval());
+
 				String applicationTypeS = getServletConfig().getInitParameter("ApplicationType");
 				
 				EntryPointType applicationType;
@@ -340,32 +726,55 @@ public abstract class WtServlet extends HttpServlet {
 				
 				wsession = new WebSession(this, jsession.getId(), applicationType, getConfiguration().getFavicon(), request);
 				logger.info("Session created: " + jsession.getId() + " (#sessions = " + addSession() + ")");
+				liveSessions.put(wsession.getSessionId(), wsession);
+				metrics.sessionCreated(applicationType);
 				jsession.setAttribute(WtServlet.WT_WEBSESSION_ID, new BoundSession(wsession));
 			}
 	
 			logger.debug("Handling: (" + jsession.getId() + "): " + request.getRequestURI() + " " + request.getMethod() + " " + request.getScriptName() + " " + request.getPathInfo() + " " + request.getQueryString());
 			
 			WebSession.Handler handler = null;
+			long start = System.nanoTime();
 			try {
 				handler = new WebSession.Handler(wsession, request, response);
 				wsession.handleRequest(handler);
 			} finally {
 				handler.release();
+				metrics.requestHandled(response.getResponseType(), System.nanoTime() - start);
 			}
 
-			if (handler != null && handler.getSession().isDead()) {
-				try {
-					jsession.setAttribute(WtServlet.WT_WEBSESSION_ID, null);
-					jsession.invalidate();
-					logger.info("Session exiting: " + jsession.getId() + " (#sessions = " + removeSession(handler.getSession()) + ")");
-				} catch (IllegalStateException e) {
-					// If session was invalidated by another request...
-				}
-			}
+			if (handler != null)
+				expireDeadSession(jsession, handler.getSession());
+
+			if (response.getResponse() instanceof BotPageCache.Recorder)
+				((BotPageCache.Recorder) response.getResponse()).store();
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
+
+	/*
+	 * Returns the JWt session that is bound to an HTTP session, or null.
+	 */
+	static WebSession getBoundSession(HttpSession jsession) {
+		BoundSession bsession = (BoundSession) jsession.getAttribute(WtServlet.WT_WEBSESSION_ID);
+		return bsession != null ? bsession.getSession() : null;
+	}
+
+	/*
+	 * Invalidates the HTTP session when the JWt session has been killed.
+	 */
+	void expireDeadSession(HttpSession jsession, WebSession wsession) {
+		if (wsession.isDead()) {
+			try {
+				jsession.setAttribute(WtServlet.WT_WEBSESSION_ID, null);
+				jsession.invalidate();
+				logger.info("Session exiting: " + jsession.getId() + " (#sessions = " + getSessionCount() + ")");
+			} catch (IllegalStateException e) {
+				// If session was invalidated by another request...
+			}
+		}
+	}
 	
 	void addUploadProgressUrl(String url) {
 		synchronized (uploadProgressUrls_) {
@@ -434,6 +843,29 @@ public abstract class WtServlet extends HttpServlet {
 		return true;
 	}
 
+	/**
+	 * Returns the number of times a request waited for another request of the same
+	 * session while it was being bootstrapped.
+	 * <p>
+	 * The style sheet request of a new session waits until the application has been
+	 * created, and the script request waits until the style sheet has been served.
+	 *
+	 * @see #getBootWaitTime()
+	 */
+	public static long getBootWaitCount() {
+		return WebSession.getBootWaitCount();
+	}
+
+	/**
+	 * Returns the total time, in nanoseconds, that requests waited while their session
+	 * was being bootstrapped.
+	 *
+	 * @see #getBootWaitCount()
+	 */
+	public static long getBootWaitTime() {
+		return WebSession.getBootWaitTime();
+	}
+
 	/**
 	 * Returns whether asynchronous I/O is supported.
 	 * 
@@ -463,10 +895,6 @@ public abstract class WtServlet extends HttpServlet {
 			return result;
 	}
 	
-	private InputStream getResourceStream(final String fileName) throws FileNotFoundException {
-		return this.getClass().getResourceAsStream("/eu/webtoolkit/jwt/" + fileName);
-	}
-
 	private static String readFile(final String fileName) {
 		return JarUtils.getInstance().readTextFromJar(fileName);
 	}
@@ -492,20 +920,34 @@ public abstract class WtServlet extends HttpServlet {
 	 * Resources may either be private to a single session or public. Use this method to add a public resource with a fixed path.
 	 * When the path contains the application context's path, the path should start with a '/',
 	 * if not the '/' should be omitted.
+	 * <p>
+	 * When the path ends with a '/', the resource is also used for all paths below it (unless
+	 * a more specific resource has been bound to such a path).
+	 * <p>
+	 * Resources may be added while the servlet is serving requests.
 	 */
-	public void addResource(WResource staticResource, String path) {
-		for (WResource sr : staticResources) {
-			if (sr.getInternalPath() != null && sr.getInternalPath().equals(path)) {
-				WString error = new WString(
-						"WtServlet#addResource() error: a static resource was already deployed on path '{1}'");
-				throw new RuntimeException(error.arg(path).toString());
-			}
+	public synchronized void addResource(WResource staticResource, String path) {
+		if (staticResourceRouter.hasPath(path)) {
+			WString error = new WString(
+					"WtServlet#addResource() error: a static resource was already deployed on path '{1}'");
+			throw new RuntimeException(error.arg(path).toString());
 		}
 		
 		staticResource.setInternalPath(path);
 		staticResources.add(staticResource);
+
+		staticResourceRouter = new StaticResourceRouter(staticResources);
 	}
 	
+	/**
+	 * Returns the cache for pages that are rendered for bots.
+	 * 
+	 * @see Configuration#setBotPageCacheSize(int)
+	 */
+	public BotPageCache getBotPageCache() {
+		return botPageCache;
+	}
+
 	public static WtServlet getInstance() {
 		return instance;
 	}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+/*
+ * An output stream which applies a gzip content-encoding to a response.
+ *
+ * Output is buffered until it reaches the threshold: only then the Content-Encoding
+ * header is set and the data is streamed through a deflater. A response which remains
+ * below the threshold is sent uncompressed when the stream is finished.
+ */
+class CompressingOutputStream extends OutputStream {
+	private static AtomicLong compressedResponses = new AtomicLong();
+	private static AtomicLong bytesIn = new AtomicLong();
+	private static AtomicLong bytesOut = new AtomicLong();
+
+	/*
+	 * Counts the bytes written to the underlying stream.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+		private OutputStream out;
+		private long count;
+
+		CountingOutputStream(OutputStream out) {
+			this.out = out;
+			this.count = 0;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			++count;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+	}
+
+	/*
+	 * A gzip stream which releases the native memory of its deflater, when ended.
+	 */
+	private static class GzipStream extends GZIPOutputStream {
+		GzipStream(OutputStream out) throws IOException {
+			super(out, 8192);
+			def.setLevel(Deflater.BEST_SPEED);
+		}
+
+		void end() {
+			def.end();
+		}
+	}
+
+	private HttpServletResponse response;
+	private OutputStream out;
+	private int threshold;
+	private ByteArrayOutputStream buffer;
+	private CountingOutputStream counter;
+	private GzipStream gzip;
+	private long length;
+	private boolean finished;
+
+	CompressingOutputStream(HttpServletResponse response, OutputStream out, int threshold) {
+		this.response = response;
+		this.out = out;
+		this.threshold = threshold;
+		this.buffer = new ByteArrayOutputStream(Math.min(Math.max(threshold, 0) + 1, 8192));
+		this.length = 0;
+		this.finished = false;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (finished)
+			throw new IOException("Stream already finished");
+
+		length += len;
+
+		if (gzip != null)
+			gzip.write(b, off, len);
+		else {
+			buffer.write(b, off, len);
+			if (buffer.size() > threshold)
+				startCompression();
+		}
+	}
+
+	/*
+	 * Flushing while still buffering is a no-op: we cannot yet decide on the encoding.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (gzip != null)
+			gzip.flush();
+	}
+
+	/*
+	 * Sends the output written so far. If it was still being buffered, the response is
+	 * sent uncompressed.
+	 *
+	 * Once compression has started, output that is still held by the deflater is only
+	 * sent when the stream is finished: a sync flush (GZIPOutputStream's syncFlush) is
+	 * not available before Java 7.
+	 */
+	void flushOutput() throws IOException {
+		if (finished)
+			return;
+
+		if (gzip == null) {
+			buffer.writeTo(out);
+			buffer.reset();
+			threshold = Integer.MAX_VALUE;
+			out.flush();
+		} else
+			gzip.flush();
+	}
+
+	/*
+	 * Writes the remaining output. This must be called before the response is completed.
+	 */
+	void finish() throws IOException {
+		if (finished)
+			return;
+
+		finished = true;
+
+		if (gzip != null) {
+			try {
+				gzip.finish();
+				gzip.flush();
+			} finally {
+				gzip.end();
+			}
+
+			compressedResponses.incrementAndGet();
+			bytesIn.addAndGet(length);
+			bytesOut.addAndGet(counter.count);
+		} else {
+			buffer.writeTo(out);
+			out.flush();
+		}
+
+		buffer = null;
+	}
+
+	/*
+	 * Releases the deflater, without writing the remaining output. This is a no-op when
+	 * the stream has been finished, and should be called when the response is abandoned
+	 * (e.g. after an error).
+	 */
+	void end() {
+		if (finished)
+			return;
+
+		finished = true;
+
+		if (gzip != null)
+			gzip.end();
+
+		buffer = null;
+	}
+
+	private void startCompression() throws IOException {
+		if (response.isCommitted()) {
+			/* Too late to change the encoding, e.g. after a flush of the underlying stream */
+			buffer.writeTo(out);
+			buffer.reset();
+			threshold = Integer.MAX_VALUE;
+			return;
+		}
+
+		response.setHeader("Content-Encoding", "gzip");
+		response.addHeader("Vary", "Accept-Encoding");
+
+		counter = new CountingOutputStream(out);
+		gzip = new GzipStream(counter);
+
+		buffer.writeTo(gzip);
+		buffer.reset();
+	}
+
+	static long getCompressedResponseCount() {
+		return compressedResponses.get();
+	}
+
+	static long getBytesIn() {
+		return bytesIn.get();
+	}
+
+	static long getBytesOut() {
+		return bytesOut.get();
+	}
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt.servlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import eu.webtoolkit.jwt.utils.StreamUtils;
+
+/**
+ * A chunk of a file of a chunked upload.
+ * <p>
+ * The body of a request that posts a chunk (with a "Content-Range: bytes a-b/total"
+ * header) is written straight at its offset into the spool file of the uploaded file,
+ * while the request is parsed, i.e. before the session is locked. The spool files of
+ * the uploads in progress are kept in a registry, keyed by the (servlet) session, the
+ * upload id and the index of the file.
+ * <p>
+ * A spool file is created by the first chunk of a file, and is claimed by the upload
+ * while handling that chunk. A spool file which is not claimed (e.g. because the
+ * request was rejected) is deleted when the request is done; a claimed spool file is
+ * deleted when the upload is discarded, or when the session is destroyed.
+ * <p>
+ * This is an internal JWt class.
+ *
+ * @see WebRequest#getUploadChunk()
+ */
+public class UploadChunk {
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(?:(\\d+)-(\\d+)|\\*)/(\\d+)");
+	private static final long SPOOL_CHUNK_SIZE = 1024 * 1024;
+
+	private static ConcurrentMap<String, SpoolFile> spoolFiles = new ConcurrentHashMap<String, SpoolFile>();
+
+	/**
+	 * The spool file of a file of a chunked upload.
+	 * <p>
+	 * This is an internal JWt class.
+	 */
+	public static class SpoolFile {
+		private String key;
+		private File file;
+		private int writers;
+		private boolean claimed;
+		private boolean closed;
+		private boolean deleted;
+
+		private SpoolFile(String key) throws IOException {
+			this.key = key;
+			this.file = File.createTempFile("jwt", "jwt");
+		}
+
+		/**
+		 * Returns the spool file.
+		 */
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * Keeps the spool file, once the file has been received.
+		 * <p>
+		 * The spool file is owned by the uploaded file afterwards, and no longer accepts
+		 * chunks.
+		 */
+		public synchronized void keep() {
+			closed = true;
+			spoolFiles.remove(key, this);
+		}
+
+		/**
+		 * Deletes the spool file, after the chunks that are still being written.
+		 */
+		public synchronized void delete() {
+			if (deleted)
+				return;
+
+			closed = true;
+			deleted = true;
+			spoolFiles.remove(key, this);
+
+			if (writers == 0)
+				file.delete();
+		}
+
+		private synchronized boolean acquire() {
+			if (closed)
+				return false;
+
+			++writers;
+			return true;
+		}
+
+		private synchronized void release() {
+			--writers;
+
+			if (writers == 0) {
+				if (deleted)
+					file.delete();
+				else if (!claimed && !closed)
+					delete();
+			}
+		}
+
+		private synchronized boolean claim() {
+			if (closed)
+				return false;
+
+			claimed = true;
+			return true;
+		}
+	}
+
+	private SpoolFile spoolFile;
+	private long position;
+	private long length;
+
+	private UploadChunk(SpoolFile spoolFile, long position) {
+		this.spoolFile = spoolFile;
+		this.position = position;
+		this.length = 0;
+	}
+
+	/**
+	 * Returns the spool file to which the chunk was written.
+	 */
+	public SpoolFile getSpoolFile() {
+		return spoolFile;
+	}
+
+	/**
+	 * Returns the offset of the chunk in the file.
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Returns the number of bytes of the chunk that were received.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/*
+	 * Writes the body of a request into the spool file of the file it belongs to. This
+	 * returns null if the request is not a chunk, or if it exceeds the maximum file size.
+	 */
+	static UploadChunk receive(HttpServletRequest request, InputStream in, long fileSizeMax) throws IOException {
+		String contentRange = request.getHeader("Content-Range");
+		String key = getKey(request);
+		long[] range = contentRange != null ? parseContentRange(contentRange) : null;
+		if (key == null || range == null || range[0] < 0 || (fileSizeMax >= 0 && range[2] > fileSizeMax))
+			return null;
+
+		UploadChunk result = null;
+		while (result == null) {
+			SpoolFile spoolFile = getSpoolFile(key);
+			if (spoolFile.acquire())
+				result = new UploadChunk(spoolFile, range[0]);
+		}
+
+		try {
+			result.write(in, range[1] - range[0] + 1);
+		} catch (IOException e) {
+			result.release();
+			throw e;
+		} finally {
+			StreamUtils.closeQuietly(in);
+		}
+
+		return result;
+	}
+
+	private void write(InputStream in, long maxLength) throws IOException {
+		RandomAccessFile f = new RandomAccessFile(spoolFile.file, "rw");
+		try {
+			FileChannel channel = f.getChannel();
+			ReadableByteChannel source = Channels.newChannel(in);
+			while (length < maxLength) {
+				long n = channel.transferFrom(source, position + length, Math.min(maxLength - length, SPOOL_CHUNK_SIZE));
+				if (n <= 0)
+					break;
+				length += n;
+			}
+		} finally {
+			f.close();
+		}
+	}
+
+	/*
+	 * Ends the request that posted the chunk: a spool file which was not claimed is
+	 * deleted.
+	 */
+	void release() {
+		spoolFile.release();
+	}
+
+	/**
+	 * Claims the spool file of a file of a chunked upload, creating it if needed.
+	 * <p>
+	 * This returns <code>null</code> if the request does not identify a file.
+	 */
+	public static SpoolFile claimSpoolFile(HttpServletRequest request) throws IOException {
+		String key = getKey(request);
+		if (key == null)
+			return null;
+
+		for (;;) {
+			SpoolFile spoolFile = getSpoolFile(key);
+			if (spoolFile.claim())
+				return spoolFile;
+		}
+	}
+
+	private static SpoolFile getSpoolFile(String key) throws IOException {
+		SpoolFile result = spoolFiles.get(key);
+		if (result != null)
+			return result;
+
+		SpoolFile created = new SpoolFile(key);
+		result = spoolFiles.putIfAbsent(key, created);
+		if (result != null) {
+			created.file.delete();
+			return result;
+		}
+
+		return created;
+	}
+
+	/**
+	 * Deletes the spool files of the uploads of a session, which are still in progress.
+	 */
+	public static void discardSession(HttpSession session) {
+		String prefix = session.getId() + ' ';
+		for (Iterator<Map.Entry<String, SpoolFile>> i = spoolFiles.entrySet().iterator(); i.hasNext();) {
+			Map.Entry<String, SpoolFile> e = i.next();
+			if (e.getKey().startsWith(prefix))
+				e.getValue().delete();
+		}
+	}
+
+	/*
+	 * Returns the key of the file that a request posts to, or null if the request does
+	 * not identify a file of a chunked upload.
+	 */
+	private static String getKey(HttpServletRequest request) {
+		HttpSession session = request.getSession(false);
+		String id = request.getParameter("upload");
+		String index = request.getParameter("file");
+		if (session == null || id == null || !isValidId(id) || index == null || !isValidIndex(index))
+			return null;
+
+		return session.getId() + ' ' + id + ' ' + index;
+	}
+
+	/**
+	 * Returns whether an upload id is valid: it is alphanumeric, and at most 64
+	 * characters long.
+	 */
+	public static boolean isValidId(String id) {
+		if (id.length() == 0 || id.length() > 64)
+			return false;
+
+		for (int i = 0; i < id.length(); ++i)
+			if (!Character.isLetterOrDigit(id.charAt(i)))
+				return false;
+
+		return true;
+	}
+
+	private static boolean isValidIndex(String index) {
+		if (index.length() == 0 || index.length() > 9)
+			return false;
+
+		for (int i = 0; i < index.length(); ++i)
+			if (index.charAt(i) < '0' || index.charAt(i) > '9')
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Parses a Content-Range header of a chunk.
+	 * <p>
+	 * Returns { first, last, total } for "bytes first-last/total", { -1, -1, total } for
+	 * "bytes * /total", or <code>null</code> if the header is not valid.
+	 */
+	public static long[] parseContentRange(String header) {
+		Matcher m = CONTENT_RANGE.matcher(header.trim());
+		if (!m.matches())
+			return null;
+
+		long total = parseLong(m.group(3));
+		if (m.group(1) == null)
+			return total >= 0 ? new long[] { -1, -1, total } : null;
+
+		long first = parseLong(m.group(1));
+		long last = parseLong(m.group(2));
+		if (first < 0 || last < first || last >= total)
+			return null;
+
+		return new long[] { first, last, total };
+	}
+
+	private static long parseLong(String s) {
+		try {
+			return Long.parseLong(s);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
@@ -28,7 +28,15 @@ import org.slf4j.LoggerFactory;
 public class UploadedFile {
 	private static Logger logger = LoggerFactory.getLogger(UploadedFile.class);
 
-	UploadedFile(String spoolName, String clientFileName, String contentType) {
+	/**
+	 * Creates the details of an uploaded file.
+	 * <p>
+	 * The spool file is deleted automatically, unless it is stolen using
+	 * {@link UploadedFile#stealSpoolFile() stealSpoolFile()}.
+	 * <p>
+	 * This is an internal JWt method.
+	 */
+	public UploadedFile(String spoolName, String clientFileName, String contentType) {
 		this.fileInfo_ = null;
 		this.fileInfo_ = new UploadedFile.Impl();
 		this.fileInfo_.spoolFileName = spoolName;
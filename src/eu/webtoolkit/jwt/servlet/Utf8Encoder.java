@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/*
+ * Encodes text to UTF-8 straight into an output stream.
+ *
+ * The text is encoded in a byte buffer which is reused by each thread, so that writing
+ * a rendered response (usually kept in a StringBuilder) does not need a String copy of
+ * it, nor the intermediate buffers of an OutputStreamWriter.
+ */
+class Utf8Encoder {
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	private static ThreadLocal<byte[]> buffer = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[BUFFER_SIZE];
+		}
+	};
+
+	static void write(CharSequence text, OutputStream out) throws IOException {
+		byte[] b = buffer.get();
+		int n = 0;
+		int length = text.length();
+
+		for (int i = 0; i < length; ++i) {
+			if (n > BUFFER_SIZE - 4) {
+				out.write(b, 0, n);
+				n = 0;
+			}
+
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				b[n++] = (byte) c;
+			} else if (c < 0x800) {
+				b[n++] = (byte) (0xC0 | (c >> 6));
+				b[n++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(text.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, text.charAt(++i));
+				b[n++] = (byte) (0xF0 | (cp >> 18));
+				b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				b[n++] = (byte) (0x80 | (cp & 0x3F));
+			} else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+				/* Like OutputStreamWriter, replace a malformed surrogate */
+				b[n++] = (byte) '?';
+			} else {
+				b[n++] = (byte) (0xE0 | (c >> 12));
+				b[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				b[n++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+
+		if (n > 0)
+			out.write(b, 0, n);
+	}
+}
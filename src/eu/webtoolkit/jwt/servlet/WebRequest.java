@@ -5,26 +5,35 @@
  */
 package eu.webtoolkit.jwt.servlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 
-import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadBase;
 import org.apache.commons.fileupload.FileUploadException;
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+import org.apache.commons.fileupload.ParameterParser;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 
+import eu.webtoolkit.jwt.Configuration;
+import eu.webtoolkit.jwt.RequestTracer;
 import eu.webtoolkit.jwt.WResource;
 import eu.webtoolkit.jwt.WtServlet;
+import eu.webtoolkit.jwt.utils.StreamUtils;
 
 /**
  * A WebRequest which wraps the HttpServletRequest to add support for file uploads and
@@ -61,9 +70,88 @@ public class WebRequest extends HttpServletRequestWrapper {
 	};
 
 	/**
-	 * Enumeration for a WebSocket read event (not yet implemented).
+	 * Enumeration for a WebSocket read event.
+	 * 
+	 * This is an internal JWt enumeration.
 	 */
 	public enum ReadEvent {
+		/**
+		 * A message was received.
+		 */
+		MessageEvent,
+		/**
+		 * A ping message was received.
+		 */
+		PingEvent,
+		/**
+		 * The connection was closed or failed.
+		 */
+		Error
+	};
+
+	/**
+	 * A single byte range.
+	 */
+	public static class ByteRange {
+		private long firstByte;
+		private long lastByte;
+
+		/**
+		 * Creates a byte range.
+		 */
+		public ByteRange(long firstByte, long lastByte) {
+			this.firstByte = firstByte;
+			this.lastByte = lastByte;
+		}
+
+		/**
+		 * Returns the first byte of this range.
+		 */
+		public long getFirstByte() {
+			return firstByte;
+		}
+
+		/**
+		 * Returns the last byte of this range (inclusive).
+		 */
+		public long getLastByte() {
+			return lastByte;
+		}
+
+		/**
+		 * Returns the number of bytes in this range.
+		 */
+		public long getLength() {
+			return lastByte - firstByte + 1;
+		}
+	}
+
+	/**
+	 * A list of byte ranges, as requested with a Range header.
+	 * <p>
+	 * The list is empty when no (valid) Range header was present, in which case the
+	 * entire resource should be served.
+	 * 
+	 * @see WebRequest#getRanges(long)
+	 */
+	public static class ByteRangeSpecifier extends ArrayList<ByteRange> {
+		private static final long serialVersionUID = 1L;
+
+		private boolean satisfiable = true;
+
+		/**
+		 * Returns whether the ranges are satisfiable.
+		 * <p>
+		 * When a Range header was present but none of its ranges overlap with the
+		 * resource, a 416 (Requested Range Not Satisfiable) response should be sent.
+		 */
+		public boolean isSatisfiable() {
+			return satisfiable;
+		}
+
+		void setSatisfiable(boolean satisfiable) {
+			this.satisfiable = satisfiable;
+		}
 	}
 
 	/**
@@ -80,6 +168,12 @@ public class WebRequest extends HttpServletRequestWrapper {
 	private Map<String, List<UploadedFile>> files_;
 	private String scriptName;
 	private String pathInfo;
+	private long fileSizeMax = -1;
+	private long fieldSizeMax = -1;
+	private long postDataExceeded = 0;
+	private UploadChunk uploadChunk;
+
+	private static final long SPOOL_CHUNK_SIZE = 1024 * 1024;
 
 	/**
 	 * Creates a WebRequest by wrapping an HttpServletRequest
@@ -161,15 +255,44 @@ public class WebRequest extends HttpServletRequestWrapper {
 	 * @param progressListener a progress listener implementation
 	 */
 	public WebRequest(HttpServletRequest request, ProgressListener progressListener) {
+		this(request, progressListener, null);
+	}
+
+	/**
+	 * Creates a WebRequest by wrapping an HttpServletRequest
+	 * <p>
+	 * Posted files and fields are subject to the upload limits of the configuration.
+	 * 
+	 * @param request The request to be wrapped.
+	 * @param progressListener a progress listener implementation
+	 * @param configuration the configuration (may be <code>null</code>)
+	 */
+	public WebRequest(HttpServletRequest request, ProgressListener progressListener, Configuration configuration) {
 		super(request);
 		this.httpRequest  = request;
-		
+
+		if (configuration != null) {
+			this.fileSizeMax = configuration.getUploadFileSizeMax();
+			this.fieldSizeMax = configuration.getUploadFieldSizeMax();
+		}
+
 		computePaths();
 
+		RequestTracer tracer = configuration != null ? configuration.getRequestTracer() : null;
+		long start = 0;
+		if (tracer != null) {
+			start = System.nanoTime();
+			tracer.phaseStarted(RequestTracer.Phase.Parse, null, null);
+		}
+
 		try {
 			parse(progressListener);
 		} catch (IOException e) {
 			e.printStackTrace();
+		} finally {
+			if (tracer != null)
+				tracer.phaseEnded(RequestTracer.Phase.Parse, getParameter("wtd"), getParameter("signal"),
+						System.nanoTime() - start, getContentLength());
 		}
 	}
 
@@ -242,57 +365,39 @@ public class WebRequest extends HttpServletRequestWrapper {
 		return pathInfo;
 	}
 
-	@SuppressWarnings({ "unchecked", "deprecation" })
 	private void parse(final ProgressListener progressUpdate) throws IOException {
-		if (FileUploadBase.isMultipartContent(this)) {
-			try {
-				// Create a factory for disk-based file items
-				DiskFileItemFactory factory = new DiskFileItemFactory();
-
-				// Create a new file upload handler
-				ServletFileUpload upload = new ServletFileUpload(factory);
+		if (ServletFileUpload.isMultipartContent(this)) {
+			parseParameters();
 
-				if (progressUpdate != null) {
-					upload.setProgressListener(new org.apache.commons.fileupload.ProgressListener(){
-						public void update(long pBytesRead, long pContentLength, int pItems) {
-							progressUpdate.update(WebRequest.this, pBytesRead, pContentLength);
-						}
-					});
-				}
+			ServletFileUpload upload = new ServletFileUpload();
+			if (fileSizeMax >= 0)
+				upload.setFileSizeMax(fileSizeMax);
 
-				// Parse the request
-				List items = upload.parseRequest(this);
+			if (progressUpdate != null) {
+				upload.setProgressListener(new org.apache.commons.fileupload.ProgressListener(){
+					public void update(long pBytesRead, long pContentLength, int pItems) {
+						progressUpdate.update(WebRequest.this, pBytesRead, pContentLength);
+					}
+				});
+			}
 
-				parseParameters();
-				
-				Iterator itr = items.iterator();
+			try {
+				FileItemIterator itr = upload.getItemIterator(this);
 
-				FileItem fi;
-				File f = null;
 				while (itr.hasNext()) {
-					fi = (FileItem) itr.next();
-
-					// Check if not form field so as to only handle the file inputs
-					// else condition handles the submit button input
-					if (!fi.isFormField()) {
-						try {
-							f = File.createTempFile("jwt", "jwt");
-							fi.write(f);
-							fi.delete();
-						} catch (IOException e) {
-							e.printStackTrace();
-						} catch (Exception e) {
-							e.printStackTrace();
-						}
+					FileItemStream item = itr.next();
 
-						List<UploadedFile> files = files_.get(fi.getFieldName());
+					if (!item.isFormField()) {
+						File f = spool(item);
+
+						List<UploadedFile> files = files_.get(item.getFieldName());
 						if (files == null) {
 							files = new ArrayList<UploadedFile>();
-							files_.put(fi.getFieldName(), files);
+							files_.put(item.getFieldName(), files);
 						}
-						files.add(new UploadedFile(f.getAbsolutePath(), fi.getName(), fi.getContentType()));
+						files.add(new UploadedFile(f.getAbsolutePath(), item.getName(), item.getContentType()));
 					} else {
-						String[] v = parameters_.get(fi.getFieldName());
+						String[] v = parameters_.get(item.getFieldName());
 						if (v == null)
 							v = new String[1];
 						else {
@@ -301,15 +406,105 @@ public class WebRequest extends HttpServletRequestWrapper {
 								newv[i] = v[i];
 							v = newv;
 						}
-						v[v.length - 1] = fi.getString();
-						parameters_.put(fi.getFieldName(), v);
+						v[v.length - 1] = readField(item);
+						parameters_.put(item.getFieldName(), v);
 					}
 				}
+			} catch (FileUploadBase.FileUploadIOException e) {
+				if (e.getCause() instanceof FileUploadBase.FileSizeLimitExceededException)
+					postDataExceeded(((FileUploadBase.FileSizeLimitExceededException) e.getCause()).getActualSize());
+				else
+					e.printStackTrace();
+			} catch (FileUploadBase.FileSizeLimitExceededException e) {
+				postDataExceeded(e.getActualSize());
 			} catch (FileUploadException e) {
 				e.printStackTrace();
 			}
-		} else
+		} else {
 			parseParameters();
+
+			if ("POST".equals(getMethod()) && getHeader("Content-Range") != null)
+				uploadChunk = UploadChunk.receive(this, getInputStream(), fileSizeMax);
+		}
+	}
+
+	/*
+	 * Writes a file part straight to its spool file.
+	 */
+	private File spool(FileItemStream item) throws IOException {
+		return spool(item.openStream());
+	}
+
+	private File spool(InputStream in) throws IOException {
+		File f = File.createTempFile("jwt", "jwt");
+
+		FileOutputStream out = new FileOutputStream(f);
+		boolean complete = false;
+		try {
+			FileChannel channel = out.getChannel();
+			ReadableByteChannel source = Channels.newChannel(in);
+			long position = 0;
+			for (;;) {
+				long n = channel.transferFrom(source, position, SPOOL_CHUNK_SIZE);
+				if (n <= 0)
+					break;
+				position += n;
+			}
+			complete = true;
+		} finally {
+			StreamUtils.closeQuietly(in);
+			out.close();
+			if (!complete)
+				f.delete();
+		}
+
+		return f;
+	}
+
+	private String readField(FileItemStream item) throws IOException, FileUploadException {
+		InputStream in = item.openStream();
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		try {
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				data.write(buffer, 0, n);
+				if (fieldSizeMax >= 0 && data.size() > fieldSizeMax)
+					throw new FileUploadBase.FileSizeLimitExceededException("Field " + item.getFieldName()
+							+ " exceeds its maximum permitted size", data.size(), fieldSizeMax);
+			}
+		} finally {
+			StreamUtils.closeQuietly(in);
+		}
+
+		String charset = null;
+		if (item.getContentType() != null) {
+			ParameterParser parser = new ParameterParser();
+			parser.setLowerCaseNames(true);
+			charset = (String) parser.parse(item.getContentType(), ';').get("charset");
+		}
+
+		return data.toString(charset != null ? charset : "ISO-8859-1");
+	}
+
+	private void postDataExceeded(long size) {
+		long contentLength = getContentLength();
+		postDataExceeded = contentLength > 0 ? contentLength : size;
+	}
+
+	/**
+	 * Returns the size of the posted data, if it exceeded a limit.
+	 * <p>
+	 * When a file or a field in a multipart request exceeds its configured limit, the
+	 * remainder of the request is discarded.
+	 * 
+	 * @return the size of the posted data, or 0 if it did not exceed a limit.
+	 * 
+	 * @see Configuration#setUploadFileSizeMax(long)
+	 * @see Configuration#setUploadFieldSizeMax(long)
+	 */
+	public long getPostDataExceeded() {
+		return postDataExceeded;
 	}
 
 	private void parseParameters() throws IOException {
@@ -345,6 +540,36 @@ public class WebRequest extends HttpServletRequestWrapper {
 		return files_;
 	}
 
+	/**
+	 * Returns the chunk of a chunked upload.
+	 * <p>
+	 * The body of a request that posts a chunk of a file (with a Content-Range header)
+	 * is written into the spool file of that file while the request is parsed, i.e.
+	 * before the session is locked.
+	 * 
+	 * @return the chunk, or <code>null</code> if the request is not a chunk.
+	 * 
+	 * @see #discardUploadChunk()
+	 */
+	public UploadChunk getUploadChunk() {
+		return uploadChunk;
+	}
+
+	/**
+	 * Ends the handling of a chunk of a chunked upload.
+	 * <p>
+	 * The spool file to which the chunk was written is deleted, unless it has been
+	 * claimed by an upload.
+	 * 
+	 * @see #getUploadChunk()
+	 */
+	public void discardUploadChunk() {
+		if (uploadChunk != null) {
+			uploadChunk.release();
+			uploadChunk = null;
+		}
+	}
+
 	/**
 	 * Returns the parameter map.
 	 * <p>
@@ -394,6 +619,78 @@ public class WebRequest extends HttpServletRequestWrapper {
 		return null;
 	}
 
+	/**
+	 * Returns the byte ranges requested with the Range header.
+	 * 
+	 * @param fileSize the size of the requested resource
+	 * @return the requested byte ranges, clipped to the resource size.
+	 * 
+	 * @see #getRanges(String, long)
+	 */
+	public ByteRangeSpecifier getRanges(long fileSize) {
+		return getRanges(getHeader("Range"), fileSize);
+	}
+
+	/**
+	 * Parses a Range header value.
+	 * <p>
+	 * Only "bytes" ranges are supported. A malformed header is ignored, and results
+	 * in an empty (but satisfiable) specifier.
+	 * 
+	 * @param header the Range header value, may be <code>null</code>
+	 * @param fileSize the size of the requested resource
+	 * @return the requested byte ranges, clipped to the resource size.
+	 */
+	public static ByteRangeSpecifier getRanges(String header, long fileSize) {
+		ByteRangeSpecifier result = new ByteRangeSpecifier();
+
+		if (header == null)
+			return result;
+
+		header = header.trim();
+		if (!header.startsWith("bytes="))
+			return result;
+
+		boolean parsedRange = false;
+		for (String spec : header.substring(6).split(",")) {
+			spec = spec.trim();
+			int dash = spec.indexOf('-');
+			if (dash == -1)
+				return new ByteRangeSpecifier();
+
+			long first, last;
+			try {
+				String firstS = spec.substring(0, dash).trim();
+				String lastS = spec.substring(dash + 1).trim();
+				if (firstS.length() == 0) {
+					if (lastS.length() == 0)
+						return new ByteRangeSpecifier();
+					long suffix = Long.parseLong(lastS);
+					first = Math.max(0, fileSize - suffix);
+					last = fileSize - 1;
+					if (suffix == 0)
+						first = fileSize;
+				} else {
+					first = Long.parseLong(firstS);
+					last = lastS.length() == 0 ? Long.MAX_VALUE : Long.parseLong(lastS);
+					if (last < first)
+						return new ByteRangeSpecifier();
+				}
+			} catch (NumberFormatException e) {
+				return new ByteRangeSpecifier();
+			}
+
+			parsedRange = true;
+			if (first < fileSize)
+				result.add(new ByteRange(first, Math.min(last, fileSize - 1)));
+		}
+
+		if (parsedRange && result.isEmpty())
+			result.setSatisfiable(false);
+
+		return result;
+	}
+
 	/**
 	 * Returns whether this request is a WebSocket request.
 	 * 
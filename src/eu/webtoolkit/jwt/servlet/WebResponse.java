@@ -5,6 +5,7 @@
  */
 package eu.webtoolkit.jwt.servlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -18,6 +19,7 @@ import javax.servlet.http.HttpServletResponseWrapper;
 
 import eu.webtoolkit.jwt.WResource;
 import eu.webtoolkit.jwt.WtServlet;
+import eu.webtoolkit.jwt.utils.HttpUtils;
 import eu.webtoolkit.jwt.servlet.WebRequest.ResponseType;
 
 /**
@@ -33,10 +35,13 @@ import eu.webtoolkit.jwt.servlet.WebRequest.ResponseType;
  */
 public class WebResponse extends HttpServletResponseWrapper {
 	private OutputStreamWriter outWriter;
+	private OutputStream textStream;
 	private HttpServletRequest request;
 	private int id;
 	private ServletOutputStream outputStream;
 	private ResponseType responseType;
+	private CompressingOutputStream compressingStream;
+	private ByteArrayOutputStream deferredOutput;
 
 	/**
 	 * Constructor which wraps a HttpServletResponse.
@@ -53,7 +58,8 @@ public class WebResponse extends HttpServletResponseWrapper {
 		this.request = request;
 
 		try {
-			outWriter = new OutputStreamWriter(getOutputStream(), "UTF-8");
+			textStream = getOutputStream();
+			outWriter = new OutputStreamWriter(textStream, "UTF-8");
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -75,9 +81,15 @@ public class WebResponse extends HttpServletResponseWrapper {
 			public void write(int arg0) throws IOException {
 				out.write(arg0);
 			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
 		};
 
 		try {
+			textStream = outputStream;
 			outWriter = new OutputStreamWriter(outputStream, "UTF-8");
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -113,6 +125,146 @@ public class WebResponse extends HttpServletResponseWrapper {
 		return this.outWriter;
 	}
 
+	/**
+	 * Writes text to the response.
+	 * <p>
+	 * This is equivalent to <code>out().append(text)</code>, but encodes the text
+	 * straight from the character sequence (e.g. a StringBuilder) into the output
+	 * stream, without copying it first.
+	 * 
+	 * @param text the text.
+	 */
+	public void write(CharSequence text) throws IOException {
+		outWriter.flush();
+		Utf8Encoder.write(text, textStream);
+	}
+
+	/**
+	 * Enables a gzip content-encoding for the text written to {@link #out()}.
+	 * <p>
+	 * The response is only compressed when the client accepts a gzip encoding, and when
+	 * the output exceeds the given threshold. This must be called before anything has been
+	 * written to the response, and the output stream must not be used directly afterwards.
+	 * <p>
+	 * This is an internal JWt method.
+	 * 
+	 * @param threshold the minimum size (in bytes) of a response before it is compressed.
+	 */
+	public void enableCompression(int threshold) {
+		if (compressingStream != null || !acceptsGzip() || isWebSocketRequest() || isWebSocketMessage())
+			return;
+
+		try {
+			OutputStream target = deferredOutput != null ? deferredOutput : getOutputStream();
+			compressingStream = new CompressingOutputStream(this, target, threshold);
+			textStream = compressingStream;
+			outWriter = new OutputStreamWriter(compressingStream, "UTF-8");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Defers the output written to {@link #out()}.
+	 * <p>
+	 * The output is kept in memory, and {@link #flush()} only completes it: it is written
+	 * to the client by {@link #writeDeferredOutput()}. This allows JWt to render a response
+	 * while holding the session lock, but to write it to a (possibly slow) client after the
+	 * lock has been released. This must be called before anything has been written to the
+	 * response.
+	 * <p>
+	 * This is an internal JWt method.
+	 */
+	public void deferOutput() {
+		if (deferredOutput != null)
+			return;
+
+		try {
+			deferredOutput = new ByteArrayOutputStream();
+			textStream = deferredOutput;
+			outWriter = new OutputStreamWriter(deferredOutput, "UTF-8");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Returns whether the output is deferred.
+	 * 
+	 * @see #deferOutput()
+	 */
+	public boolean isOutputDeferred() {
+		return deferredOutput != null;
+	}
+
+	/**
+	 * Returns the size of the deferred output.
+	 * 
+	 * @see #deferOutput()
+	 */
+	public int getDeferredOutputSize() {
+		return deferredOutput != null ? deferredOutput.size() : 0;
+	}
+
+	/**
+	 * Writes the deferred output and completes the response.
+	 * <p>
+	 * This is an internal JWt method.
+	 * 
+	 * @see #deferOutput()
+	 */
+	public void writeDeferredOutput() {
+		try {
+			if (!isCommitted())
+				setContentLength(deferredOutput.size());
+			deferredOutput.writeTo(getOutputStream());
+			getOutputStream().flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (Exception e) {
+			System.err.println("Exception occurred when writing the response");
+		} finally {
+			deferredOutput = null;
+			WtServlet.getServletApi().completeAsyncContext(request);
+		}
+	}
+
+	/**
+	 * Returns the number of responses that were sent compressed.
+	 * 
+	 * @see #enableCompression(int)
+	 */
+	public static long getCompressedResponseCount() {
+		return CompressingOutputStream.getCompressedResponseCount();
+	}
+
+	/**
+	 * Returns the total size of the compressed responses, before compression.
+	 * 
+	 * @see #enableCompression(int)
+	 */
+	public static long getCompressionBytesIn() {
+		return CompressingOutputStream.getBytesIn();
+	}
+
+	/**
+	 * Returns the total size of the compressed responses, after compression.
+	 * 
+	 * @see #enableCompression(int)
+	 */
+	public static long getCompressionBytesOut() {
+		return CompressingOutputStream.getBytesOut();
+	}
+
+	/**
+	 * Returns the total number of bytes saved by compressing responses.
+	 * 
+	 * @see #enableCompression(int)
+	 */
+	public static long getCompressionBytesSaved() {
+		return CompressingOutputStream.getBytesIn() - CompressingOutputStream.getBytesOut();
+	}
+
 	/**
 	 * Sets an ID to the WebResponse (used by JWt).
 	 * 
@@ -136,21 +288,62 @@ public class WebResponse extends HttpServletResponseWrapper {
 	/**
 	 * Flushes the response.
 	 * <p>
-	 * This flushes the writer.
+	 * This flushes the writer, and completes a compressed response. When the output is
+	 * deferred, the response is only completed by {@link #writeDeferredOutput()}.
 	 */
 	public void flush() {
+		if (deferredOutput != null) {
+			try {
+				outWriter.flush();
+				if (compressingStream != null)
+					compressingStream.finish();
+			} catch (IOException e) {
+				e.printStackTrace();
+			} finally {
+				if (compressingStream != null)
+					compressingStream.end();
+			}
+			return;
+		}
+
 		try {
 			outWriter.flush();
+			if (compressingStream != null)
+				compressingStream.finish();
 			getOutputStream().flush();
 		} catch (IOException e) {
 			e.printStackTrace();
 		} catch (Exception e) {
 			System.err.println("Exception occurred when flushing the writer");
 		} finally {
+			if (compressingStream != null)
+				compressingStream.end();
 			WtServlet.getServletApi().completeAsyncContext(request);
 		}
 	}
 
+	/**
+	 * Sends the output written so far to the client, without completing the response.
+	 * <p>
+	 * When the output is compressed, this commits the response to a compressed
+	 * encoding. This has no effect when the output is deferred.
+	 * <p>
+	 * This is an internal JWt method.
+	 */
+	public void flushOutput() {
+		if (deferredOutput != null)
+			return;
+
+		try {
+			outWriter.flush();
+			if (compressingStream != null)
+				compressingStream.flushOutput();
+			getOutputStream().flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Returns the request path information.
 	 * <p>
@@ -180,6 +373,26 @@ public class WebResponse extends HttpServletResponseWrapper {
 		return result == null ? "" : result;
 	}
 
+	/**
+	 * Returns a request header value.
+	 * 
+	 * @param header the header name
+	 * @return the header value, or an empty string if the header is not present.
+	 */
+	public String getRequestHeaderValue(String header) {
+		String result = request != null ? request.getHeader(header) : null;
+		return result == null ? "" : result;
+	}
+
+	/**
+	 * Returns whether the client accepts a gzip content-encoding.
+	 * 
+	 * This is an internal JWt method.
+	 */
+	public boolean acceptsGzip() {
+		return request != null && HttpUtils.acceptsGzip(request);
+	}
+
 	/**
 	 * Returns the request method.
 	 * 
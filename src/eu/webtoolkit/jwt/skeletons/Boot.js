@@ -268,8 +268,10 @@ _$_$ifnot_SPLIT_SCRIPT_$_();
                null);
 _$_$endif_$_();
 _$_$if_SPLIT_SCRIPT_$_();
-    /* Ideally, we should be able to omit the sessionid too */
-    loadScript(selfUrl + allInfo + '&request=script&skeleton=true',
+    /* The skeleton is shared by all sessions, if it is cached */
+    var skeletonUrl = _$_SKELETON_URL_$_;
+    loadScript(skeletonUrl ? skeletonUrl
+               : selfUrl + allInfo + '&request=script&skeleton=true',
                function() {
                  loadScript(selfUrl + allInfo
                             + '&request=script&rand=' + rand(), null);
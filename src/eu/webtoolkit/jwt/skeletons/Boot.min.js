@@ -7,4 +7,4 @@ function t(c,q){var i,e,n,x,y=false;e=l();i=0;for(x=e.length;i<x;i++){n=e[i].spl
 -1)d=d.substr(0,b)+d.substr(b+h.length)}h="&deployPath="+encodeURIComponent(d);var o=g.XMLHttpRequest||g.ActiveXObject,j=_$_RELOAD_IS_NEWSESSION_$_;_$_$if_COOKIE_CHECKS_$_();m.cookie="jscookietest=valid";j=j||_$_USE_COOKIES_$_&&m.cookie.indexOf("jscookietest=valid")!=-1;m.cookie="jscookietest=valid;expires=Thu, 01 Jan 1970 00:00:00 GMT";d=new Date;d.setTime(d.getTime()+1E3);m.cookie="WtTestCookie=ok;path=/;expires="+d.toGMTString();_$_$endif_$_();b=g.location.hash;if(b.length>0)b=b.substr(1);var p=
 b.indexOf("?");if(p!=-1)b=b.substr(0,p);p=navigator.userAgent.toLowerCase();if(p.indexOf("gecko")==-1||p.indexOf("webkit")!=-1)b=unescape(b);p="";if(screen.deviceXDPI!=screen.logicalXDPI)p="&scale="+screen.deviceXDPI/screen.logicalXDPI;var u=_$_SELF_URL_$_+"&sid="+_$_SCRIPT_ID_$_,v=!!(window.history&&window.history.pushState),z=v?"&htmlHistory=true":"";if(j=!j||!o)if(f("wtd")==="_$_SESSION_ID_$_")j=false;if(j)if(v)r(t("wtd","_$_SESSION_ID_$_"));else{h=b.length>1&&b.charAt(0)=="/"?b:_$_INTERNAL_PATH_$_;
 if(h.length>0)u+="#"+h;r(u)}else if(o){o=_$_AJAX_CANONICAL_URL_$_;j="";if(!v&&o.length>1){_$_$if_HYBRID_$_();h="WtInternalPath="+escape(_$_INTERNAL_PATH_$_)+";path=/;expires="+d.toGMTString();m.cookie=h;_$_$endif_$_();if(o.charAt(0)=="#")o="../"+o;r(o)}else{if(b.length>1&&b.charAt(0)=="/"){j="&_="+encodeURIComponent(b);_$_$if_HYBRID_$_();b!=_$_INTERNAL_PATH_$_&&setTimeout(s,10);_$_$endif_$_()}_$_$if_PROGRESS_$_();d=m.body;d.addEventListener?d.addEventListener("click",delayClick,true):d.attachEvent("onclick",
-delayClick);_$_$endif_$_();var w=j+p+z+h;_$_$ifnot_SPLIT_SCRIPT_$_();loadScript(u+w+"&request=script&rand="+k(),null);_$_$endif_$_();_$_$if_SPLIT_SCRIPT_$_();loadScript(u+w+"&request=script&skeleton=true",function(){loadScript(u+w+"&request=script&rand="+k(),null)});_$_$endif_$_()}}}_$_$if_DEFER_SCRIPT_$_();setTimeout(a,1);_$_$endif_$_();_$_$ifnot_DEFER_SCRIPT_$_();a();_$_$endif_$_()})();
+delayClick);_$_$endif_$_();var w=j+p+z+h;_$_$ifnot_SPLIT_SCRIPT_$_();loadScript(u+w+"&request=script&rand="+k(),null);_$_$endif_$_();_$_$if_SPLIT_SCRIPT_$_();var B=_$_SKELETON_URL_$_;loadScript(B?B:u+w+"&request=script&skeleton=true",function(){loadScript(u+w+"&request=script&rand="+k(),null)});_$_$endif_$_()}}}_$_$if_DEFER_SCRIPT_$_();setTimeout(a,1);_$_$endif_$_();_$_$ifnot_DEFER_SCRIPT_$_();a();_$_$endif_$_()})();
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.servlet.http.HttpServletRequest;
+
+public class HttpUtils {
+	/*
+	 * Evaluates the If-None-Match and If-Modified-Since headers of a (GET) request
+	 * against the current validators of a resource. If-None-Match takes precedence.
+	 *
+	 * A lastModified value of -1 means that it is unknown.
+	 */
+	public static boolean isNotModified(HttpServletRequest request, String eTag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			if (eTag == null)
+				return false;
+
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/"))
+					tag = tag.substring(2);
+				if (tag.equals("*") || tag.equals(eTag))
+					return true;
+			}
+
+			return false;
+		}
+
+		if (lastModified != -1) {
+			long ifModifiedSince;
+			try {
+				ifModifiedSince = request.getDateHeader("If-Modified-Since");
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+
+			// HTTP dates have a resolution of one second
+			return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+		}
+
+		return false;
+	}
+
+	/*
+	 * Evaluates the If-Range header of a request: returns whether a Range header may be
+	 * honoured, i.e. when there is no If-Range header or it matches the current validators.
+	 */
+	public static boolean isRangeApplicable(HttpServletRequest request, String eTag, long lastModified) {
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null)
+			return true;
+
+		ifRange = ifRange.trim();
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+			return eTag != null && ifRange.equals(eTag);
+
+		if (lastModified == -1)
+			return false;
+
+		try {
+			long date = request.getDateHeader("If-Range");
+			return date != -1 && lastModified / 1000 == date / 1000;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	public static boolean acceptsGzip(HttpServletRequest request) {
+		String acceptEncoding = request.getHeader("Accept-Encoding");
+		return acceptEncoding != null && acceptEncoding.indexOf("gzip") != -1;
+	}
+
+	public static boolean isCompressibleMimeType(String mimeType) {
+		return mimeType.startsWith("text/") || mimeType.endsWith("javascript") || mimeType.endsWith("json")
+				|| mimeType.endsWith("xml");
+	}
+
+	/*
+	 * Computes an ETag for a file from its size and modification time, which avoids
+	 * reading the file.
+	 */
+	public static String computeETag(long size, long lastModified) {
+		return "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+	}
+
+	/*
+	 * Computes a strong ETag (a quoted hex MD5 digest) for the given contents.
+	 */
+	public static String computeETag(byte[] data) {
+		try {
+			MessageDigest d = MessageDigest.getInstance("MD5");
+			byte[] digest = d.digest(data);
+
+			StringBuilder result = new StringBuilder(2 + digest.length * 2);
+			result.append('"');
+			for (byte b : digest) {
+				result.append(Character.forDigit((b >> 4) & 0xF, 16));
+				result.append(Character.forDigit(b & 0xF, 16));
+			}
+			result.append('"');
+
+			return result.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -12,6 +12,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.zip.GZIPOutputStream;
 
 public class StreamUtils {
 	public static String readFile(String fname) {
@@ -34,6 +35,18 @@ public class StreamUtils {
 		}
 	}
 
+	public static byte[] gzip(byte[] data) {
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length / 4 + 64);
+			GZIPOutputStream gz = new GZIPOutputStream(baos);
+			gz.write(data);
+			gz.close();
+			return baos.toByteArray();
+		} catch (IOException e) {
+			throw new RuntimeException("Could not compress data", e);
+		}
+	}
+
 	public static void closeQuietly(InputStream is) {
 		try {
 			if (is != null) {
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/*
+ * Compares the table-driven EscapeOStream with the previous implementation, on
+ * randomized input and rule set stacks.
+ */
+public class EscapeOStreamTest {
+	private static final String ALPHABET = "abc &<>\"'\\\n\r\t\u00e9\u20ac";
+	private static final EscapeOStream.RuleSet[] RULE_SETS = EscapeOStream.RuleSet.values();
+
+	@Test
+	public void testSingleRuleSets() {
+		for (EscapeOStream.RuleSet rules : RULE_SETS) {
+			EscapeOStream s = new EscapeOStream();
+			OldEscapeOStream old = new OldEscapeOStream();
+			s.pushEscape(rules);
+			old.pushEscape(rules);
+			s.append(ALPHABET);
+			old.append(ALPHABET);
+			for (int i = 0; i < ALPHABET.length(); ++i) {
+				s.append(ALPHABET.charAt(i));
+				old.append(ALPHABET.charAt(i));
+			}
+			assertEquals(rules.toString(), old.toString(), s.toString());
+		}
+	}
+
+	@Test
+	public void testRandomized() {
+		Random random = new Random(42);
+
+		for (int test = 0; test < 2000; ++test) {
+			EscapeOStream s = new EscapeOStream();
+			OldEscapeOStream old = new OldEscapeOStream();
+			StringBuilder ops = new StringBuilder();
+			int depth = 0;
+
+			for (int op = 0; op < 20; ++op) {
+				switch (random.nextInt(6)) {
+				case 0:
+					if (depth < 4) {
+						EscapeOStream.RuleSet rules = RULE_SETS[random.nextInt(RULE_SETS.length)];
+						s.pushEscape(rules);
+						old.pushEscape(rules);
+						++depth;
+						ops.append(" push ").append(rules);
+					}
+					break;
+				case 1:
+					if (depth > 0) {
+						s.popEscape();
+						old.popEscape();
+						--depth;
+						ops.append(" pop");
+					}
+					break;
+				case 2: {
+					char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+					s.append(c);
+					old.append(c);
+					ops.append(" char");
+					break;
+				}
+				case 3: {
+					/* Escapes with the rules of a pushed stream */
+					EscapeOStream.RuleSet rules = RULE_SETS[random.nextInt(RULE_SETS.length)];
+					EscapeOStream sRules = s.push();
+					OldEscapeOStream oldRules = old.push();
+					sRules.pushEscape(rules);
+					oldRules.pushEscape(rules);
+					String text = randomString(random);
+					s.append(text, sRules);
+					old.append(text, oldRules);
+					ops.append(" append-with ").append(rules);
+					break;
+				}
+				default: {
+					String text = randomString(random);
+					s.append(text);
+					old.append(text);
+					ops.append(" append");
+				}
+				}
+
+				assertEquals(ops.toString(), old.toString(), s.toString());
+			}
+		}
+	}
+
+	private static String randomString(Random random) {
+		StringBuilder result = new StringBuilder();
+		int length = random.nextInt(30);
+		for (int i = 0; i < length; ++i)
+			result.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		return result.toString();
+	}
+
+	/*
+	 * The previous implementation of EscapeOStream, as a reference, except that the
+	 * special characters are reset when the rules are mixed again: they used to
+	 * accumulate, mapping append(char) to the wrong replacement with more than one
+	 * rule set.
+	 */
+	static class OldEscapeOStream {
+		private static class Entry {
+			public Entry(char c_, String s_) {
+				c = c_;
+				s = s_;
+			}
+
+			public Entry clone() {
+				return new Entry(c, s);
+			}
+
+			public char c;
+			public String s = "";
+		}
+
+		private StringBuilder sink_;
+		private List<Entry> mixed_;
+		private String special_;
+		private ArrayList<EscapeOStream.RuleSet> ruleSets_;
+
+		public OldEscapeOStream() {
+			this(new StringBuilder());
+		}
+
+		public OldEscapeOStream(StringBuilder sink) {
+			sink_ = sink;
+			mixed_ = null;
+			special_ = "";
+			ruleSets_ = new ArrayList<EscapeOStream.RuleSet>();
+		}
+
+		@SuppressWarnings("unchecked")
+		public OldEscapeOStream push() {
+			OldEscapeOStream result = new OldEscapeOStream(sink_);
+			result.ruleSets_ = (ArrayList<EscapeOStream.RuleSet>) ruleSets_.clone();
+			return result;
+		}
+
+		public void pushEscape(EscapeOStream.RuleSet rules) {
+			ruleSets_.add(rules);
+			mixRules();
+		}
+
+		public void popEscape() {
+			ruleSets_.remove(ruleSets_.size() - 1);
+			mixRules();
+		}
+
+		public OldEscapeOStream append(char c) {
+			if (special_.length() == 0)
+				sink_.append(c);
+			else {
+				int i = special_.indexOf(c);
+
+				if (i != -1)
+					sink_.append(mixed_.get(i).s);
+				else
+					sink_.append(c);
+			}
+
+			return this;
+		}
+
+		public OldEscapeOStream append(String s) {
+			return append(s, this);
+		}
+
+		public OldEscapeOStream append(String s, OldEscapeOStream rules) {
+			char[] sA = s.toCharArray();
+			char[] specialA = rules.special_.toCharArray();
+
+			for (int pos = 0; pos != -1;) {
+				int lastPos = pos;
+				pos = StringUtils.strpbrk(sA, pos, specialA);
+				if (pos != -1) {
+					char f = sA[pos];
+
+					sink_.append(s.substring(lastPos, pos));
+
+					for (int i = 0; i < rules.mixed_.size(); ++i) {
+						if (rules.mixed_.get(i).c == f) {
+							sink_.append(rules.mixed_.get(i).s);
+							break;
+						}
+					}
+
+					pos = pos + 1;
+				} else {
+					sink_.append(s.substring(lastPos));
+				}
+			}
+
+			return this;
+		}
+
+		public String toString() {
+			return sink_.toString();
+		}
+
+		private void mixRules() {
+			int ruleSetsSize = ruleSets_.size();
+
+			special_ = "";
+			if (ruleSetsSize == 0) {
+				mixed_ = null;
+			} else if (ruleSetsSize == 1) {
+				mixed_ = standardSets_.get(ruleSets_.get(0).ordinal());
+				special_ = standardSetsSpecial_.get(ruleSets_.get(0).ordinal());
+			} else {
+				mixed_ = new ArrayList<Entry>();
+				for (int i = ruleSetsSize - 1; i >= 0; --i) {
+					List<Entry> toMix = standardSets_.get(ruleSets_.get(i).ordinal());
+
+					for (int j = 0; j < mixed_.size(); ++j)
+						for (int k = 0; k < toMix.size(); ++k)
+							mixed_.get(j).s = mixed_.get(j).s.replace(toMix.get(k).c + "", toMix.get(k).s);
+
+					for (int j = 0; j < toMix.size(); ++j) {
+						mixed_.add(toMix.get(j).clone());
+						special_ += toMix.get(j).c;
+					}
+				}
+			}
+		}
+
+		private static List<String> standardSetsSpecial_ = new ArrayList<String>();
+		private static List<List<Entry>> standardSets_ = new ArrayList<List<Entry>>();
+
+		static {
+			List<Entry> htmlAttributeEntries = new ArrayList<Entry>();
+			List<Entry> jsStringLiteralSQuoteEntries = new ArrayList<Entry>();
+			List<Entry> jsStringLiteralDQuoteEntries = new ArrayList<Entry>();
+			List<Entry> plainTextEntries = new ArrayList<Entry>();
+			List<Entry> plainTextEntriesNewLines = new ArrayList<Entry>();
+
+			standardSetsSpecial_.add("&\"<");
+			standardSetsSpecial_.add("\\\n\r\t'");
+			standardSetsSpecial_.add("\\\n\r\t\"");
+			standardSetsSpecial_.add("&><");
+			standardSetsSpecial_.add("&><\n");
+
+			htmlAttributeEntries.add(new Entry('&', "&amp;"));
+			htmlAttributeEntries.add(new Entry('\"', "&#34;"));
+			htmlAttributeEntries.add(new Entry('<', "&lt;"));
+
+			plainTextEntries.add(new Entry('&', "&amp;"));
+			plainTextEntries.add(new Entry('>', "&gt;"));
+			plainTextEntries.add(new Entry('<', "&lt;"));
+
+			plainTextEntriesNewLines.addAll(plainTextEntries);
+			plainTextEntriesNewLines.add(new Entry('\n', "<br />"));
+
+			jsStringLiteralSQuoteEntries.add(new Entry('\\', "\\\\"));
+			jsStringLiteralSQuoteEntries.add(new Entry('\n', "\\n"));
+			jsStringLiteralSQuoteEntries.add(new Entry('\r', "\\r"));
+			jsStringLiteralSQuoteEntries.add(new Entry('\t', "\\t"));
+			jsStringLiteralSQuoteEntries.add(new Entry('\'', "\\'"));
+
+			jsStringLiteralDQuoteEntries.add(new Entry('\\', "\\\\"));
+			jsStringLiteralDQuoteEntries.add(new Entry('\n', "\\n"));
+			jsStringLiteralDQuoteEntries.add(new Entry('\r', "\\r"));
+			jsStringLiteralDQuoteEntries.add(new Entry('\t', "\\t"));
+			jsStringLiteralDQuoteEntries.add(new Entry('"', "\\\""));
+
+			standardSets_.add(htmlAttributeEntries);
+			standardSets_.add(jsStringLiteralSQuoteEntries);
+			standardSets_.add(jsStringLiteralDQuoteEntries);
+			standardSets_.add(plainTextEntries);
+			standardSets_.add(plainTextEntriesNewLines);
+		}
+	}
+}
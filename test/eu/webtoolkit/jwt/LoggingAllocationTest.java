@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Checks that the disabled (debug) logging on the hot paths of the renderer does not
+ * allocate: the messages must only be built when their level is enabled.
+ */
+public class LoggingAllocationTest {
+	private static final int ITERATIONS = 100000;
+
+	@Test
+	public void testNeedUpdateDoesNotAllocate() {
+		assumeTrue(!LoggerFactory.getLogger(WebRenderer.class).isDebugEnabled());
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		WApplication app = new WApplication(new WTestEnvironment(new Configuration()));
+		WebRenderer renderer = app.getSession().getRenderer();
+		WText text = new WText("text", app.getRoot());
+
+		/* Warm up: the widget is then already pending an update */
+		for (int i = 0; i < ITERATIONS; ++i)
+			renderer.needUpdate(text, false);
+
+		/*
+		 * An unguarded message costs at least a hundred bytes per call; the minimum of a
+		 * few rounds leaves out one-off allocations (e.g. by the JIT compiler).
+		 */
+		long threadId = Thread.currentThread().getId();
+		long allocated = Long.MAX_VALUE;
+		for (int round = 0; round < 3; ++round) {
+			long before = threads.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < ITERATIONS; ++i)
+				renderer.needUpdate(text, false);
+			allocated = Math.min(allocated, threads.getThreadAllocatedBytes(threadId) - before);
+		}
+
+		assertTrue("allocated " + allocated + " bytes for " + ITERATIONS + " calls", allocated < ITERATIONS);
+	}
+}
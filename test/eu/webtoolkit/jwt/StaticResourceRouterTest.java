@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.webtoolkit.jwt.servlet.WebRequest;
+import eu.webtoolkit.jwt.servlet.WebResponse;
+
+public class StaticResourceRouterTest {
+	private static final String SCRIPT_NAME = "/app";
+
+	private List<WResource> resources = new ArrayList<WResource>();
+
+	private WResource add(final String path) {
+		WResource result = new WResource() {
+			public String getInternalPath() {
+				return path;
+			}
+
+			protected void handleRequest(WebRequest request, WebResponse response) {
+			}
+		};
+		resources.add(result);
+		return result;
+	}
+
+	private WResource route(String pathInfo) {
+		return new StaticResourceRouter(resources).route(SCRIPT_NAME, pathInfo);
+	}
+
+	@Test
+	public void testEmpty() {
+		assertNull(route("/"));
+		assertNull(route("/file"));
+	}
+
+	@Test
+	public void testExactPaths() {
+		WResource feed = add("/app/feed.xml");
+		WResource robots = add("/app/robots.txt");
+
+		assertSame(feed, route("/feed.xml"));
+		assertSame(robots, route("/robots.txt"));
+		assertNull(route("/feed.xm"));
+		assertNull(route("/feed.xml/below"));
+		assertNull(route("/feed.xml/"));
+		assertNull(new StaticResourceRouter(resources).route("/other", "/feed.xml"));
+	}
+
+	@Test
+	public void testHasPath() {
+		add("/app/feed.xml");
+		add("/app/files/");
+
+		StaticResourceRouter router = new StaticResourceRouter(resources);
+		assertTrue(router.hasPath("/app/feed.xml"));
+		assertTrue(router.hasPath("/app/files/"));
+		assertFalse(router.hasPath("/feed.xml"));
+		assertFalse(router.hasPath("/app/files"));
+	}
+
+	@Test
+	public void testPrefixPaths() {
+		WResource files = add("/app/files/");
+
+		assertSame(files, route("/files/a.txt"));
+		assertSame(files, route("/files/dir/a.txt"));
+		assertNull(route("/files-old/a.txt"));
+		assertNull(route("/other/a.txt"));
+	}
+
+	@Test
+	public void testTrailingSlash() {
+		WResource files = add("/app/files/");
+
+		/* The directory itself matches with a trailing slash only */
+		assertSame(files, route("/files/"));
+		assertNull(route("/files"));
+		assertSame(files, route("/files//a.txt"));
+	}
+
+	@Test
+	public void testLongestPrefixWins() {
+		WResource files = add("/app/files/");
+		WResource images = add("/app/files/images/");
+		WResource logo = add("/app/files/images/logo.png");
+
+		assertSame(files, route("/files/a.txt"));
+		assertSame(images, route("/files/images/a.png"));
+		assertSame(images, route("/files/images/icons/a.png"));
+		assertSame(logo, route("/files/images/logo.png"));
+		assertSame(files, route("/files/images"));
+	}
+
+	@Test
+	public void testFirstResourceWins() {
+		WResource first = add("/app/files/");
+		add("/app/files/");
+
+		assertSame(first, route("/files/a.txt"));
+	}
+}
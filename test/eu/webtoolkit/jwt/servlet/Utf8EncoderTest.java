@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import org.junit.Test;
+
+/*
+ * Compares Utf8Encoder with an OutputStreamWriter, which was used previously.
+ */
+public class Utf8EncoderTest {
+	private static final String ALPHABET = "a<\u007f\u0080\u00e9\u07ff\u0800\u20ac\uffff\ud800\udbff\udc00\udfff";
+
+	@Test
+	public void testAscii() throws IOException {
+		assertEncoded("");
+		assertEncoded("Hello, world!\n\t<div id=\"o1\"></div>");
+	}
+
+	@Test
+	public void testMultiByte() throws IOException {
+		assertEncoded("caf\u00e9 \u00ff \u07ff");
+		assertEncoded("\u0800 \u20ac \ufeff \uffff");
+	}
+
+	@Test
+	public void testSurrogatePairs() throws IOException {
+		assertEncoded("\ud83d\ude00");
+		assertEncoded("a\ud800\udc00b\udbff\udfffc");
+	}
+
+	@Test
+	public void testMalformedSurrogates() throws IOException {
+		assertEncoded("\ud800", "?");
+		assertEncoded("\udc00", "?");
+		assertEncoded("a\ud800b", "a?b");
+		assertEncoded("\udc00\ud800", "??");
+		assertEncoded("\ud800\ud800\udc00", "?\ud800\udc00");
+		assertEncoded("\ud83d\ude00\ude00", "\ud83d\ude00?");
+		assertEncoded("a\ud800", "a?");
+	}
+
+	@Test
+	public void testBufferBoundaries() throws IOException {
+		for (int offset = 0; offset < 8; ++offset) {
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < 16 * 1024 - 8 + offset; ++i)
+				text.append('x');
+			for (int i = 0; i < 4; ++i)
+				text.append("\u20ac\ud83d\ude00\u00e9");
+			assertEncoded(text);
+		}
+	}
+
+	@Test
+	public void testRandomized() throws IOException {
+		Random random = new Random(42);
+
+		for (int test = 0; test < 500; ++test) {
+			StringBuilder text = new StringBuilder();
+			int length = random.nextInt(test < 490 ? 100 : 50000);
+			for (int i = 0; i < length; ++i)
+				text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			assertEncoded(text);
+		}
+	}
+
+	private static void assertEncoded(CharSequence text) throws IOException {
+		assertEncoded(text, text.toString());
+	}
+
+	/*
+	 * Checks the encoding of a text, which should match the encoding of the expected
+	 * text by an OutputStreamWriter.
+	 */
+	private static void assertEncoded(CharSequence text, String expected) throws IOException {
+		ByteArrayOutputStream reference = new ByteArrayOutputStream();
+		Writer writer = new OutputStreamWriter(reference, "UTF-8");
+		writer.append(expected);
+		writer.close();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Utf8Encoder.write(text, out);
+
+		assertArrayEquals(reference.toByteArray(), out.toByteArray());
+	}
+}
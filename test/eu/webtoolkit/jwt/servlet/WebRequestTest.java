@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2009 Emweb bvba, Leuven, Belgium.
+ *
+ * See the LICENSE file for terms of use.
+ */
+package eu.webtoolkit.jwt.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+import eu.webtoolkit.jwt.Configuration;
+import eu.webtoolkit.jwt.servlet.WebRequest.ByteRangeSpecifier;
+
+public class WebRequestTest {
+	@Test
+	public void testNoRange() {
+		ByteRangeSpecifier ranges = WebRequest.getRanges(null, 100);
+		assertTrue(ranges.isEmpty());
+		assertTrue(ranges.isSatisfiable());
+	}
+
+	@Test
+	public void testSingleRange() {
+		assertRanges(WebRequest.getRanges("bytes=0-9", 100), 0, 9);
+		assertRanges(WebRequest.getRanges(" bytes=10-19 ", 100), 10, 19);
+		assertRanges(WebRequest.getRanges("bytes=90-", 100), 90, 99);
+	}
+
+	@Test
+	public void testRangeClippedToSize() {
+		assertRanges(WebRequest.getRanges("bytes=90-200", 100), 90, 99);
+	}
+
+	@Test
+	public void testSuffixRange() {
+		assertRanges(WebRequest.getRanges("bytes=-10", 100), 90, 99);
+		assertRanges(WebRequest.getRanges("bytes=-200", 100), 0, 99);
+	}
+
+	@Test
+	public void testMultipleRanges() {
+		assertRanges(WebRequest.getRanges("bytes=0-9, 20-29,-5", 100), 0, 9, 20, 29, 95, 99);
+	}
+
+	@Test
+	public void testUnsatisfiableRanges() {
+		ByteRangeSpecifier ranges = WebRequest.getRanges("bytes=100-", 100);
+		assertTrue(ranges.isEmpty());
+		assertFalse(ranges.isSatisfiable());
+
+		ranges = WebRequest.getRanges("bytes=-0", 100);
+		assertTrue(ranges.isEmpty());
+		assertFalse(ranges.isSatisfiable());
+	}
+
+	@Test
+	public void testPartlySatisfiableRanges() {
+		assertRanges(WebRequest.getRanges("bytes=200-300,0-0", 100), 0, 0);
+	}
+
+	@Test
+	public void testMalformedRanges() {
+		String[] headers = { "", "bytes", "bytes=", "items=0-9", "bytes=abc", "bytes=5", "bytes=-",
+				"bytes=9-0", "bytes=a-9", "bytes=0-b", "bytes=0-9,x", "bytes=0-9,20" };
+
+		for (String header : headers) {
+			ByteRangeSpecifier ranges = WebRequest.getRanges(header, 100);
+			assertTrue(header, ranges.isEmpty());
+			assertTrue(header, ranges.isSatisfiable());
+		}
+	}
+
+	@Test
+	public void testMultipartFileIsSpooled() throws IOException {
+		byte[] content = new byte[3 * 1024 * 1024 + 17];
+		for (int i = 0; i < content.length; ++i)
+			content[i] = (byte) (i * 31);
+
+		WebRequest request = new WebRequest(createMultipartRequest(content, "value"), null, new Configuration());
+
+		assertEquals(0, request.getPostDataExceeded());
+		assertEquals("value", request.getParameter("field"));
+
+		List<UploadedFile> files = request.getUploadedFiles().get("upload");
+		assertEquals(1, files.size());
+		UploadedFile file = files.get(0);
+		assertEquals("data.bin", file.getClientFileName());
+		assertEquals("application/octet-stream", file.getContentType());
+		File spoolFile = new File(file.getSpoolFileName());
+		try {
+			assertArrayEquals(content, readFile(spoolFile));
+		} finally {
+			spoolFile.delete();
+		}
+	}
+
+	@Test
+	public void testMultipartProgress() throws IOException {
+		final byte[] content = new byte[100000];
+		final long[] progress = { 0, 0 };
+
+		WebRequest request = new WebRequest(createMultipartRequest(content, "value"), new WebRequest.ProgressListener() {
+			public void update(WebRequest request, long pBytesRead, long pContentLength) {
+				++progress[0];
+				progress[1] = pBytesRead;
+			}
+		}, new Configuration());
+
+		new File(request.getUploadedFiles().get("upload").get(0).getSpoolFileName()).delete();
+		assertTrue(progress[0] > 0);
+		assertTrue(progress[1] > content.length);
+	}
+
+	@Test
+	public void testMultipartFileSizeMax() throws IOException {
+		Configuration configuration = new Configuration();
+		configuration.setUploadFileSizeMax(1000);
+		HttpServletRequest httpRequest = createMultipartRequest(new byte[1001], "value");
+
+		WebRequest request = new WebRequest(httpRequest, null, configuration);
+
+		assertEquals(httpRequest.getContentLength(), request.getPostDataExceeded());
+		assertNull(request.getUploadedFiles().get("upload"));
+	}
+
+	@Test
+	public void testMultipartFieldSizeMax() throws IOException {
+		Configuration configuration = new Configuration();
+		configuration.setUploadFieldSizeMax(4);
+		HttpServletRequest httpRequest = createMultipartRequest(new byte[10], "value");
+
+		WebRequest request = new WebRequest(httpRequest, null, configuration);
+
+		assertEquals(httpRequest.getContentLength(), request.getPostDataExceeded());
+		assertNull(request.getParameter("field"));
+	}
+
+	/*
+	 * Checks the ranges, given as pairs of first and last byte.
+	 */
+	private static void assertRanges(ByteRangeSpecifier ranges, long... bytes) {
+		assertTrue(ranges.isSatisfiable());
+		assertEquals(bytes.length / 2, ranges.size());
+		for (int i = 0; i < ranges.size(); ++i) {
+			assertEquals(bytes[2 * i], ranges.get(i).getFirstByte());
+			assertEquals(bytes[2 * i + 1], ranges.get(i).getLastByte());
+		}
+	}
+
+	/*
+	 * Creates a multipart POST request with a field, followed by a file.
+	 */
+	private static HttpServletRequest createMultipartRequest(byte[] content, String field) throws IOException {
+		final String boundary = "----boundary7MA4YWxkTrZu0gW";
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write(("--" + boundary + "\r\n"
+				+ "Content-Disposition: form-data; name=\"field\"\r\n\r\n"
+				+ field + "\r\n"
+				+ "--" + boundary + "\r\n"
+				+ "Content-Disposition: form-data; name=\"upload\"; filename=\"data.bin\"\r\n"
+				+ "Content-Type: application/octet-stream\r\n\r\n").getBytes("ISO-8859-1"));
+		body.write(content);
+		body.write(("\r\n--" + boundary + "--\r\n").getBytes("ISO-8859-1"));
+		final byte[] data = body.toByteArray();
+
+		return (HttpServletRequest) Proxy.newProxyInstance(WebRequestTest.class.getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class }, new InvocationHandler() {
+					private InputStream in = new ByteArrayInputStream(data);
+
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						String name = method.getName();
+						if (name.equals("getMethod"))
+							return "POST";
+						else if (name.equals("getContentType"))
+							return "multipart/form-data; boundary=" + boundary;
+						else if (name.equals("getContentLength"))
+							return data.length;
+						else if (name.equals("getServletPath") || name.equals("getContextPath"))
+							return "";
+						else if (name.equals("getRequestURI"))
+							return "/";
+						else if (name.equals("getParameterMap"))
+							return Collections.emptyMap();
+						else if (name.equals("getInputStream"))
+							return new ServletInputStream() {
+								public int read() throws IOException {
+									return in.read();
+								}
+
+								public int read(byte[] b, int off, int len) throws IOException {
+									return in.read(b, off, len);
+								}
+							};
+						else if (method.getReturnType() == boolean.class)
+							return false;
+						else if (method.getReturnType() == int.class)
+							return 0;
+						else if (method.getReturnType() == long.class)
+							return 0L;
+						else
+							return null;
+					}
+				});
+	}
+
+	private static byte[] readFile(File f) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		InputStream in = new FileInputStream(f);
+		try {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1)
+				result.write(buffer, 0, n);
+		} finally {
+			in.close();
+		}
+		return result.toByteArray();
+	}
+}